@@ -10,6 +10,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import com.leo.app.tasklet.BookReaderTasklet;
+import com.leo.app.tasklet.RepositoryCompactionTasklet;
 
 /**
  * The BatchConfig class is a configuration class, It enables batch processing
@@ -31,6 +32,9 @@ public class BatchConfig {
 	@Autowired
 	BookReaderTasklet bookReaderTasklet;
 
+	@Autowired
+	RepositoryCompactionTasklet repositoryCompactionTasklet;
+
 	@Bean
 	public Step bookReaderStep() {
 		return stepBuilderFactory.get("bookReaderStep").tasklet(bookReaderTasklet).build();
@@ -41,4 +45,14 @@ public class BatchConfig {
 		return jobBuilderFactory.get("bookWriterJob").start(bookReaderStep()).build();
 	}
 
+	@Bean
+	public Step repositoryCompactionStep() {
+		return stepBuilderFactory.get("repositoryCompactionStep").tasklet(repositoryCompactionTasklet).build();
+	}
+
+	@Bean
+	public Job repositoryCompactionJob() {
+		return jobBuilderFactory.get("repositoryCompactionJob").start(repositoryCompactionStep()).build();
+	}
+
 }
@@ -0,0 +1,69 @@
+package com.leo.app.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.util.Assert;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Tags;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.util.Pool;
+
+/**
+ * {@link JedisConnectionFactory} that publishes the saturation of its
+ * connection pool to the given {@link MeterRegistry}, tagged with the pool
+ * name:
+ *
+ * {@code repository.redis.pool.active}, {@code repository.redis.pool.idle} and
+ * {@code repository.redis.pool.waiters} are the connections in use, the idle
+ * connections and the threads blocked waiting for a connection.
+ * {@code repository.redis.pool.borrow-wait.mean} and
+ * {@code repository.redis.pool.borrow-wait.max} are the time threads waited to
+ * borrow a connection.
+ *
+ * @author anoop
+ *
+ */
+public class MeteredJedisConnectionFactory extends JedisConnectionFactory {
+
+	private final String poolName;
+
+	private final MeterRegistry meterRegistry;
+
+	/**
+	 * @param poolName            the pool name, used as metric tag
+	 * @param meterRegistry       the registry the pool metrics are published to
+	 * @param standaloneConfig    the Redis server
+	 * @param clientConfiguration the client configuration, with pooling
+	 */
+	public MeteredJedisConnectionFactory(String poolName, MeterRegistry meterRegistry,
+			RedisStandaloneConfiguration standaloneConfig, JedisClientConfiguration clientConfiguration) {
+		super(standaloneConfig, clientConfiguration);
+		Assert.hasLength(poolName, "A pool name is required");
+		Assert.notNull(meterRegistry, "A meter registry is required");
+		Assert.isTrue(clientConfiguration.isUsePooling(), "Pooling is required to meter the pool");
+		this.poolName = poolName;
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	protected Pool<Jedis> createRedisPool() {
+		Pool<Jedis> pool = super.createRedisPool();
+		Tags tags = Tags.of("pool", poolName);
+		Gauge.builder("repository.redis.pool.active", pool, Pool::getNumActive).tags(tags).register(meterRegistry);
+		Gauge.builder("repository.redis.pool.idle", pool, Pool::getNumIdle).tags(tags).register(meterRegistry);
+		Gauge.builder("repository.redis.pool.waiters", pool, Pool::getNumWaiters).tags(tags).register(meterRegistry);
+		TimeGauge.builder("repository.redis.pool.borrow-wait.mean", pool, TimeUnit.MILLISECONDS,
+				Pool::getMeanBorrowWaitTimeMillis).tags(tags).register(meterRegistry);
+		TimeGauge.builder("repository.redis.pool.borrow-wait.max", pool, TimeUnit.MILLISECONDS,
+				Pool::getMaxBorrowWaitTimeMillis).tags(tags).register(meterRegistry);
+		return pool;
+	}
+
+}
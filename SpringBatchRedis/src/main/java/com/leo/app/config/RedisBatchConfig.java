@@ -16,6 +16,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import com.leo.app.dao.ReplicaReadRouter;
+import com.leo.app.dao.ReplicaRoutingJobExplorer;
+
 /**
  * 
  * The RedisBatchConfig class configures Spring Batch - Job Repository,
@@ -48,6 +51,8 @@ public class RedisBatchConfig implements BatchConfigurer {
 	private JobInstanceDao redisJobInstanceDao;
 	@Autowired
 	private StepExecutionDao redisStepExecutionDao;
+	@Autowired
+	private ReplicaReadRouter replicaReadRouter;
 
 	@Override
 	public JobRepository getJobRepository() throws Exception {
@@ -68,9 +73,17 @@ public class RedisBatchConfig implements BatchConfigurer {
 		return jobLauncher;
 	}
 
+	/**
+	 * The explorer reads from the read replica when one is configured, see
+	 * {@link ReplicaRoutingJobExplorer}.
+	 */
 	@Override
 	public JobExplorer getJobExplorer() throws Exception {
-		return new SimpleJobExplorer(redisJobInstanceDao, redisJobExecutionDao, redisStepExecutionDao,
-				redisExecutionContextDao);
+		JobExplorer jobExplorer = new SimpleJobExplorer(redisJobInstanceDao, redisJobExecutionDao,
+				redisStepExecutionDao, redisExecutionContextDao);
+		if (replicaReadRouter.isEnabled()) {
+			return new ReplicaRoutingJobExplorer(jobExplorer, replicaReadRouter);
+		}
+		return jobExplorer;
 	}
 }
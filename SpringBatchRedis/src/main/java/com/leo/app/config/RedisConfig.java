@@ -4,16 +4,31 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
-import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
 
+import com.leo.app.dao.RedisExecutionCache;
+import com.leo.app.dao.RedisIdIncrementer;
+import com.leo.app.dao.codec.RepositoryRedisSerializer;
+import com.leo.app.util.AppConstants;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import redis.clients.jedis.JedisPoolConfig;
 import redis.embedded.RedisServer;
 import redis.embedded.RedisServerBuilder;
 
@@ -33,18 +48,87 @@ public class RedisConfig {
 	@Autowired
 	Environment environment;
 
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Value("${repository.redis.host:localhost}")
+	private String redisHost;
+
+	@Value("${repository.redis.port:6379}")
+	private int redisPort;
+
+	@Value("${repository.replica.host:localhost}")
+	private String replicaHost;
+
+	@Value("${repository.replica.port:0}")
+	private int replicaPort;
+
+	@Value("${repository.redis.pool.max-total:8}")
+	private int poolMaxTotal;
+
+	@Value("${repository.redis.pool.max-idle:8}")
+	private int poolMaxIdle;
+
+	@Value("${repository.redis.pool.min-idle:0}")
+	private int poolMinIdle;
+
+	@Value("${repository.redis.pool.max-wait-ms:-1}")
+	private long poolMaxWait;
+
+	@Value("${repository.redis.pool.time-between-eviction-runs-ms:30000}")
+	private long poolTimeBetweenEvictionRuns;
+
+	@Value("${repository.redis.pool.min-evictable-idle-time-ms:60000}")
+	private long poolMinEvictableIdleTime;
+
+	@Value("${repository.id.block-size:100}")
+	private int idBlockSize;
+
+	@Value("${repository.serializer:json}")
+	private String serializerFormat;
+
 	private RedisServer redisServer;
 
+	/**
+	 * Connections to the primary, and to the read replica for the explorer reads
+	 * if {@code repository.replica.port} is set. Each server gets its own pool
+	 * with the {@code repository.redis.pool} settings, metered in the application
+	 * meter registry.
+	 */
 	@Bean
 	RedisConnectionFactory jedisConnectionFactory() {
-		RedisStandaloneConfiguration config = new RedisStandaloneConfiguration("localhost", 6379);
-		return new JedisConnectionFactory(config);
+		JedisClientConfiguration clientConfiguration = JedisClientConfiguration.builder().usePooling()
+				.poolConfig(poolConfig()).build();
+		MeteredJedisConnectionFactory replica = null;
+		if (replicaPort > 0) {
+			replica = new MeteredJedisConnectionFactory("replica", meterRegistry,
+					new RedisStandaloneConfiguration(replicaHost, replicaPort), clientConfiguration);
+		}
+		return new RoutingRedisConnectionFactory(new MeteredJedisConnectionFactory("primary", meterRegistry,
+				new RedisStandaloneConfiguration(redisHost, redisPort), clientConfiguration), replica);
+	}
+
+	/**
+	 * Pool settings on top of the Jedis defaults, which test idle connections and
+	 * evict them in the background.
+	 */
+	private JedisPoolConfig poolConfig() {
+		JedisPoolConfig poolConfig = new JedisPoolConfig();
+		poolConfig.setMaxTotal(poolMaxTotal);
+		poolConfig.setMaxIdle(poolMaxIdle);
+		poolConfig.setMinIdle(poolMinIdle);
+		poolConfig.setMaxWaitMillis(poolMaxWait);
+		poolConfig.setTimeBetweenEvictionRunsMillis(poolTimeBetweenEvictionRuns);
+		poolConfig.setMinEvictableIdleTimeMillis(poolMinEvictableIdleTime);
+		return poolConfig;
 	}
 
 	@Bean
 	RedisTemplate<?, ?> redisTemplate() {
 
 		GenericJackson2JsonRedisSerializer genericJackson2JsonRedisSerializer = new GenericJackson2JsonRedisSerializer();
+		RepositoryRedisSerializer repositoryRedisSerializer = new RepositoryRedisSerializer(
+				genericJackson2JsonRedisSerializer, serializerFormat);
 
 		RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
 		redisTemplate.setConnectionFactory(jedisConnectionFactory());
@@ -52,17 +136,88 @@ public class RedisConfig {
 		redisTemplate.setKeySerializer(new StringRedisSerializer());
 		redisTemplate.setHashKeySerializer(new StringRedisSerializer());
 
-		redisTemplate.setHashValueSerializer(genericJackson2JsonRedisSerializer);
-		redisTemplate.setValueSerializer(genericJackson2JsonRedisSerializer);
+		redisTemplate.setHashValueSerializer(repositoryRedisSerializer);
+		redisTemplate.setValueSerializer(repositoryRedisSerializer);
 		redisTemplate.setEnableTransactionSupport(false);
 		redisTemplate.afterPropertiesSet();
 
 		return redisTemplate;
 	}
 
+	/**
+	 * Plain string template used for the id indexes, so the index members are
+	 * stored as decimal ids instead of JSON documents.
+	 */
+	@Bean
+	StringRedisTemplate stringRedisTemplate() {
+		StringRedisTemplate stringRedisTemplate = new StringRedisTemplate();
+		stringRedisTemplate.setConnectionFactory(jedisConnectionFactory());
+		stringRedisTemplate.setEnableTransactionSupport(false);
+		stringRedisTemplate.afterPropertiesSet();
+		return stringRedisTemplate;
+	}
+
+	/**
+	 * Template for values that are already bytes, such as the serialized
+	 * execution contexts.
+	 */
+	@Bean
+	RedisTemplate<String, byte[]> byteArrayRedisTemplate() {
+		RedisTemplate<String, byte[]> byteArrayRedisTemplate = new RedisTemplate<>();
+		byteArrayRedisTemplate.setConnectionFactory(jedisConnectionFactory());
+
+		byteArrayRedisTemplate.setKeySerializer(new StringRedisSerializer());
+		byteArrayRedisTemplate.setHashKeySerializer(new StringRedisSerializer());
+
+		byteArrayRedisTemplate.setHashValueSerializer(RedisSerializer.byteArray());
+		byteArrayRedisTemplate.setValueSerializer(RedisSerializer.byteArray());
+		byteArrayRedisTemplate.setEnableTransactionSupport(false);
+		byteArrayRedisTemplate.afterPropertiesSet();
+		return byteArrayRedisTemplate;
+	}
+
+	/**
+	 * Job instance and job execution ids are leased one at a time: the last
+	 * instance of a job and the last execution of an instance are the ones with
+	 * the highest id, so ids must follow creation order across nodes.
+	 */
+	@Bean
+	DataFieldMaxValueIncrementer jobInstanceIncrementer() {
+		return new RedisIdIncrementer(stringRedisTemplate(), AppConstants.JOB_INSTANCE_SEQ_KEY, 1);
+	}
+
+	@Bean
+	DataFieldMaxValueIncrementer jobExecutionIncrementer() {
+		return new RedisIdIncrementer(stringRedisTemplate(), AppConstants.JOB_EXECUTION_SEQ_KEY, 1);
+	}
+
+	/**
+	 * Step execution ids are leased in blocks of {@code repository.id.block-size},
+	 * a partitioned step creates many at a time and the last execution of a step
+	 * is looked up by its pointer, not by id order.
+	 */
+	@Bean
+	DataFieldMaxValueIncrementer stepExecutionIncrementer() {
+		return new RedisIdIncrementer(stringRedisTemplate(), AppConstants.STEP_EXECUTION_SEQ_KEY, idBlockSize);
+	}
+
+	/**
+	 * Subscribes the execution cache to the invalidations published by the other
+	 * nodes, only when the cache is enabled.
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "repository.execution-cache.enabled", havingValue = "true")
+	RedisMessageListenerContainer executionInvalidationListenerContainer(RedisExecutionCache redisExecutionCache) {
+		RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+		container.setConnectionFactory(jedisConnectionFactory());
+		container.addMessageListener(redisExecutionCache,
+				new ChannelTopic(AppConstants.EXECUTION_INVALIDATION_CHANNEL));
+		return container;
+	}
+
 	@PostConstruct
 	public void init() {
-		redisServer = new RedisServerBuilder().port(6379).setting("maxmemory 256M").build();
+		redisServer = new RedisServerBuilder().port(redisPort).setting("maxmemory 256M").build();
 		redisServer.start();
 	}
 
@@ -0,0 +1,39 @@
+package com.leo.app.config;
+
+import org.springframework.batch.core.job.AbstractJob;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import com.leo.app.listener.RestartContextPrefetchListener;
+
+/**
+ * Registers the {@link RestartContextPrefetchListener} on every job of the
+ * application context, so jobs do not have to add it one by one.
+ *
+ * The listener is looked up when the first job is created, a post processor
+ * that depends on the job repository DAOs would keep them from being proxied.
+ *
+ * @author anoop
+ *
+ */
+@Component
+public class RestartContextPrefetchRegistrar implements BeanPostProcessor {
+
+	private final ObjectProvider<RestartContextPrefetchListener> restartContextPrefetchListener;
+
+	public RestartContextPrefetchRegistrar(
+			ObjectProvider<RestartContextPrefetchListener> restartContextPrefetchListener) {
+		this.restartContextPrefetchListener = restartContextPrefetchListener;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof AbstractJob) {
+			((AbstractJob) bean).registerJobExecutionListener(restartContextPrefetchListener.getObject());
+		}
+		return bean;
+	}
+
+}
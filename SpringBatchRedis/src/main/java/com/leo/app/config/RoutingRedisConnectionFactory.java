@@ -0,0 +1,89 @@
+package com.leo.app.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import com.leo.app.dao.ReplicaReadRouter;
+
+/**
+ * Hands out connections to the primary, or to the read replica for threads
+ * that read through the {@link ReplicaReadRouter}.
+ * 
+ * Both connection factories are owned by this one, so the application keeps a
+ * single {@link RedisConnectionFactory} bean.
+ * 
+ * @author anoop
+ *
+ */
+public class RoutingRedisConnectionFactory implements RedisConnectionFactory, InitializingBean, DisposableBean {
+
+	private final JedisConnectionFactory primary;
+
+	@Nullable
+	private final JedisConnectionFactory replica;
+
+	/**
+	 * @param primary the primary connection factory
+	 * @param replica the replica connection factory, or {@code null} to use the
+	 *                primary for every connection
+	 */
+	public RoutingRedisConnectionFactory(JedisConnectionFactory primary, @Nullable JedisConnectionFactory replica) {
+		Assert.notNull(primary, "A primary connection factory is required");
+		this.primary = primary;
+		this.replica = replica;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		primary.afterPropertiesSet();
+		if (replica != null) {
+			replica.afterPropertiesSet();
+		}
+	}
+
+	@Override
+	public void destroy() {
+		primary.destroy();
+		if (replica != null) {
+			replica.destroy();
+		}
+	}
+
+	@Override
+	public RedisConnection getConnection() {
+		if (replica != null && ReplicaReadRouter.isReplicaRead()) {
+			return replica.getConnection();
+		}
+		return primary.getConnection();
+	}
+
+	@Override
+	public RedisClusterConnection getClusterConnection() {
+		return primary.getClusterConnection();
+	}
+
+	@Override
+	public boolean getConvertPipelineAndTxResults() {
+		return primary.getConvertPipelineAndTxResults();
+	}
+
+	@Override
+	public RedisSentinelConnection getSentinelConnection() {
+		return primary.getSentinelConnection();
+	}
+
+	@Override
+	@Nullable
+	public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+		return primary.translateExceptionIfPossible(ex);
+	}
+
+}
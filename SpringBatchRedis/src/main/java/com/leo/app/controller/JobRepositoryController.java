@@ -12,6 +12,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.leo.app.dao.RedisJobExecutionDao;
+import com.leo.app.dao.ReplicaReadRouter;
 import com.leo.app.response.JobExecutionLogs;
 
 /**
@@ -28,6 +30,12 @@ public class JobRepositoryController {
 	@Autowired
 	JobExplorer jobExplorer;
 
+	@Autowired
+	RedisJobExecutionDao redisJobExecutionDao;
+
+	@Autowired
+	ReplicaReadRouter replicaReadRouter;
+
 	/**
 	 * 
 	 * This api will return a list of job names.
@@ -50,16 +58,18 @@ public class JobRepositoryController {
 	public List<JobExecutionLogs> getJobExecutionLogs(@RequestParam String jobName) {
 		List<JobExecutionLogs> output = new ArrayList<>();
 		List<JobInstance> list = jobExplorer.getJobInstances(jobName, 0, 10);
-		for (JobInstance ji : list) {
-			List<JobExecution> jeList = jobExplorer.getJobExecutions(ji);
-			for (JobExecution je : jeList) {
-				JobExecutionLogs jobExecutionLogs = new JobExecutionLogs();
-				jobExecutionLogs.setCreatedTime(je.getCreateTime());
-				jobExecutionLogs.setStartTime(je.getStartTime());
-				jobExecutionLogs.setEndTime(je.getEndTime());
-				jobExecutionLogs.setStatus(je.getStatus().toString());
-				output.add(jobExecutionLogs);
-			}
+		// The executions of all instances are loaded in one go, the logs need
+		// neither step executions nor contexts. Like the explorer reads, they are
+		// read from the replica unless this node ran the job recently.
+		List<JobExecution> jeList = replicaReadRouter.read(replicaReadRouter.isRecentJobName(jobName),
+				() -> redisJobExecutionDao.findJobExecutions(list));
+		for (JobExecution je : jeList) {
+			JobExecutionLogs jobExecutionLogs = new JobExecutionLogs();
+			jobExecutionLogs.setCreatedTime(je.getCreateTime());
+			jobExecutionLogs.setStartTime(je.getStartTime());
+			jobExecutionLogs.setEndTime(je.getEndTime());
+			jobExecutionLogs.setStatus(je.getStatus().toString());
+			output.add(jobExecutionLogs);
 		}
 		return output;
 	}
@@ -0,0 +1,153 @@
+package com.leo.app.dao;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.function.ToLongFunction;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * In-JVM least recently used cache for repository records, bounded by the
+ * number of entries and by their total weight.
+ *
+ * Lookups are counted in the {@code repository.cache.gets} metric of the given
+ * {@link MeterRegistry}, tagged with the cache name and {@code result=hit} or
+ * {@code result=miss}, and the number of entries is published as
+ * {@code repository.cache.size}. A cache with a
+ * maximum of zero entries stores nothing.
+ *
+ * Entries can be given a time to live, after which a lookup misses.
+ *
+ * @author anoop
+ *
+ */
+public class NearCache<K, V> {
+
+	private final LinkedHashMap<K, CachedValue<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final int maxEntries;
+
+	private final long maxWeight;
+
+	private final ToLongFunction<? super V> weigher;
+
+	private final long timeToLive;
+
+	private final Counter hits;
+
+	private final Counter misses;
+
+	private long weight;
+
+	/**
+	 * @param name          the cache name, used as metric tag
+	 * @param meterRegistry the registry the cache metrics are published to
+	 * @param maxEntries    the maximum number of entries
+	 * @param maxWeight     the maximum total weight of the entries
+	 * @param weigher       the weight of an entry, an estimate of its size
+	 */
+	public NearCache(String name, MeterRegistry meterRegistry, int maxEntries, long maxWeight,
+			ToLongFunction<? super V> weigher) {
+		this(name, meterRegistry, maxEntries, maxWeight, weigher, 0);
+	}
+
+	/**
+	 * @param name          the cache name, used as metric tag
+	 * @param meterRegistry the registry the cache metrics are published to
+	 * @param maxEntries    the maximum number of entries
+	 * @param maxWeight     the maximum total weight of the entries
+	 * @param weigher       the weight of an entry, an estimate of its size
+	 * @param timeToLive    the milliseconds an entry is served after it has been
+	 *                      put, zero for no limit
+	 */
+	public NearCache(String name, MeterRegistry meterRegistry, int maxEntries, long maxWeight,
+			ToLongFunction<? super V> weigher, long timeToLive) {
+		Assert.hasLength(name, "A cache name is required");
+		Assert.notNull(meterRegistry, "A meter registry is required");
+		Assert.notNull(weigher, "A weigher is required");
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		this.timeToLive = timeToLive;
+		this.hits = meterRegistry.counter("repository.cache.gets", "cache", name, "result", "hit");
+		this.misses = meterRegistry.counter("repository.cache.gets", "cache", name, "result", "miss");
+		meterRegistry.gauge("repository.cache.size", Tags.of("cache", name), this, NearCache::size);
+	}
+
+	/**
+	 * @param key the key
+	 * @return the cached value or {@code null} if the key is not cached
+	 */
+	@Nullable
+	public synchronized V get(K key) {
+		CachedValue<V> cached = entries.get(key);
+		if (cached != null && timeToLive > 0 && System.currentTimeMillis() - cached.cachedAt > timeToLive) {
+			remove(key);
+			cached = null;
+		}
+		if (cached == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return cached.value;
+	}
+
+	/**
+	 * Cache the value, evicting the least recently used entries that no longer
+	 * fit. A value heavier than the whole cache is not stored.
+	 */
+	public synchronized void put(K key, V value) {
+		long valueWeight = weigher.applyAsLong(value);
+		if (maxEntries <= 0 || valueWeight > maxWeight) {
+			return;
+		}
+
+		CachedValue<V> previous = entries.put(key, new CachedValue<>(value));
+		if (previous != null) {
+			weight -= weigher.applyAsLong(previous.value);
+		}
+		weight += valueWeight;
+
+		Iterator<Entry<K, CachedValue<V>>> eldest = entries.entrySet().iterator();
+		while (entries.size() > maxEntries || weight > maxWeight) {
+			weight -= weigher.applyAsLong(eldest.next().getValue().value);
+			eldest.remove();
+		}
+	}
+
+	public synchronized void remove(K key) {
+		CachedValue<V> previous = entries.remove(key);
+		if (previous != null) {
+			weight -= weigher.applyAsLong(previous.value);
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private static final class CachedValue<V> {
+
+		private final V value;
+
+		private final long cachedAt = System.currentTimeMillis();
+
+		private CachedValue(V value) {
+			this.value = value;
+		}
+
+	}
+
+}
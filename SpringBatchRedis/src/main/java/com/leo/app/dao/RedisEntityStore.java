@@ -0,0 +1,203 @@
+package com.leo.app.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.annotation.Resource;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads repository entities from their entity hash, one hash per entity kind
+ * with the entity id as field.
+ *
+ * Entities written before the hash layout only exist in the legacy sorted sets,
+ * where every update added a new member under the same score. Ids that are not
+ * found in the hash are looked up there, and the highest version stored under
+ * the id is returned.
+ *
+ * Versioned entities keep their version in a separate version hash, which the
+ * compare-and-set script checks and bumps together with the record.
+ *
+ * @author anoop
+ *
+ */
+@Component
+public class RedisEntityStore {
+
+	private static final RedisScript<Long> COMPARE_AND_SET_SCRIPT = RedisScript
+			.of(new ClassPathResource("scripts/compare-and-set.lua"), Long.class);
+
+	@Resource(name = "redisTemplate")
+	HashOperations<String, String, Object> opsEntityHash;
+
+	@Resource(name = "stringRedisTemplate")
+	HashOperations<String, String, String> opsVersionHash;
+
+	@Resource(name = "redisTemplate")
+	RedisTemplate<String, Object> redisTemplate;
+
+	/**
+	 * @param hashKey      the entity hash
+	 * @param legacySetKey the sorted set the entity was stored in before the hash
+	 *                     layout
+	 * @param id           the entity id
+	 * @param version      the version of an entity, or {@code null} if the entity
+	 *                     is not versioned
+	 * @return the entity or {@code null} if it does not exist
+	 */
+	@Nullable
+	public <T> T get(String hashKey, String legacySetKey, Long id, @Nullable Function<T, Integer> version) {
+		List<T> result = multiGet(hashKey, legacySetKey, Collections.singletonList(String.valueOf(id)), version);
+		return result.isEmpty() ? null : result.get(0);
+	}
+
+	/**
+	 * Fetch the entities with the given ids with a single HMGET, keeping the order
+	 * of the ids. Ids that do not exist are skipped.
+	 *
+	 * @param hashKey      the entity hash
+	 * @param legacySetKey the sorted set the entities were stored in before the
+	 *                     hash layout
+	 * @param ids          the entity ids
+	 * @param version      the version of an entity, or {@code null} if the entity
+	 *                     is not versioned
+	 * @return the entities found
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> multiGet(String hashKey, String legacySetKey, Collection<String> ids,
+			@Nullable Function<T, Integer> version) {
+		List<T> result = new ArrayList<>(ids.size());
+		if (ids.isEmpty()) {
+			return result;
+		}
+
+		List<String> fields = new ArrayList<>(ids);
+		List<Object> values = opsEntityHash.multiGet(hashKey, fields);
+
+		List<String> missing = new ArrayList<>();
+		for (int i = 0; i < fields.size(); i++) {
+			if (values.get(i) == null) {
+				missing.add(fields.get(i));
+			}
+		}
+		Map<String, T> legacy = missing.isEmpty() ? Collections.emptyMap()
+				: getLegacyEntities(legacySetKey, missing, version);
+
+		for (int i = 0; i < fields.size(); i++) {
+			T entity = values.get(i) != null ? (T) values.get(i) : legacy.get(fields.get(i));
+			if (entity != null) {
+				result.add(entity);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Write the entity if its stored version is the expected one. The check, the
+	 * write of the record and the version bump run in one Lua script, so they are
+	 * atomic and take a single round trip.
+	 * 
+	 * Entities saved before the version hash existed have no version entry yet.
+	 * Their version is taken from the stored record and the update is retried
+	 * once.
+	 *
+	 * @param hashKey         the entity hash
+	 * @param legacySetKey    the sorted set the entity was stored in before the
+	 *                        hash layout
+	 * @param versionHashKey  the version hash
+	 * @param id              the entity id
+	 * @param expectedVersion the version the caller read
+	 * @param entity          the new record
+	 * @param version         the version of an entity
+	 * @return the version stored before the call, the entity has only been
+	 *         written if it equals the expected version, or {@code null} if the
+	 *         entity does not exist
+	 */
+	@Nullable
+	public <T> Integer compareAndSet(String hashKey, String legacySetKey, String versionHashKey, Long id,
+			int expectedVersion, T entity, Function<T, Integer> version) {
+		long current = runCompareAndSet(hashKey, versionHashKey, id, expectedVersion, entity, version);
+		if (current < 0) {
+			T stored = get(hashKey, legacySetKey, id, version);
+			if (stored == null) {
+				return null;
+			}
+			opsVersionHash.putIfAbsent(versionHashKey, String.valueOf(id), String.valueOf(version.apply(stored)));
+			current = runCompareAndSet(hashKey, versionHashKey, id, expectedVersion, entity, version);
+		}
+		return (int) current;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> long runCompareAndSet(String hashKey, String versionHashKey, Long id, int expectedVersion, T entity,
+			Function<T, Integer> version) {
+		RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+		byte[] record = ((RedisSerializer<Object>) redisTemplate.getHashValueSerializer()).serialize(entity);
+
+		Long current = redisTemplate.execute(COMPARE_AND_SET_SCRIPT, RedisSerializer.byteArray(),
+				new GenericToStringSerializer<>(Long.class), Arrays.asList(hashKey, versionHashKey),
+				stringSerializer.serialize(String.valueOf(id)), stringSerializer.serialize(String.valueOf(expectedVersion)),
+				record, stringSerializer.serialize(String.valueOf(version.apply(entity))));
+		return current == null ? -1 : current;
+	}
+
+	/**
+	 * Fetch the entities with the given ids from the sorted set they were stored
+	 * in before the hash layout, with a single pipeline.
+	 *
+	 * The legacy members are read as raw bytes, because the model classes base
+	 * equality on the id alone and a deserialized set would keep an arbitrary one
+	 * of the versions stored under the same score.
+	 *
+	 * @param legacySetKey the sorted set, scored by id
+	 * @param ids          the entity ids
+	 * @param version      the version of an entity, or {@code null} if the entity
+	 *                     is not versioned
+	 * @return the entities found, by id
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Map<String, T> getLegacyEntities(String legacySetKey, List<String> ids,
+			@Nullable Function<T, Integer> version) {
+		byte[] rawKey = redisTemplate.getStringSerializer().serialize(legacySetKey);
+
+		List<Object> records = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+			for (String id : ids) {
+				double score = Long.parseLong(id);
+				connection.zRangeByScore(rawKey, score, score);
+			}
+			return null;
+		}, null);
+
+		Map<String, T> result = new HashMap<>();
+		for (int i = 0; i < ids.size(); i++) {
+			T latest = null;
+			for (byte[] member : (Set<byte[]>) records.get(i)) {
+				T candidate = (T) redisTemplate.getValueSerializer().deserialize(member);
+				if (latest == null || version == null || version.apply(candidate) > version.apply(latest)) {
+					latest = candidate;
+				}
+			}
+			if (latest != null) {
+				result.put(ids.get(i), latest);
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,205 @@
+package com.leo.app.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.leo.app.dao.model.RedisJobExecution;
+import com.leo.app.dao.model.RedisStepExecution;
+import com.leo.app.util.AppConstants;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Local cache of the job and step execution records, enabled with
+ * {@code repository.execution-cache.enabled}.
+ *
+ * Executions change while they run, possibly on another node. The DAOs call
+ * {@link #invalidateJobExecution(Long)} and
+ * {@link #invalidateStepExecution(Long)} after every update, which drops the
+ * local entry and publishes the id on the
+ * {@link AppConstants#EXECUTION_INVALIDATION_CHANNEL} channel. Every node
+ * subscribes to the channel and drops the entry as well.
+ *
+ * A record read while an invalidation arrives is not cached, since it may be
+ * older than the update. Entries also expire after
+ * {@code repository.execution-cache.time-to-live-ms}, which bounds staleness if
+ * messages are lost while the subscription reconnects. Records read from the
+ * read replica are not cached.
+ *
+ * @author anoop
+ *
+ */
+@Component
+public class RedisExecutionCache implements MessageListener {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RedisExecutionCache.class);
+
+	private static final String MESSAGE_SEPARATOR = "|";
+
+	@Value("${repository.execution-cache.enabled:false}")
+	private boolean enabled;
+
+	@Value("${repository.execution-cache.max-entries:10000}")
+	private int maxEntries;
+
+	@Value("${repository.execution-cache.time-to-live-ms:30000}")
+	private long timeToLive;
+
+	@Resource(name = "stringRedisTemplate")
+	StringRedisTemplate stringRedisTemplate;
+
+	@Autowired
+	RedisEntityStore redisEntityStore;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	private final AtomicLong invalidations = new AtomicLong();
+
+	private final Map<String, NearCache<Long, Object>> caches = new HashMap<>();
+
+	@PostConstruct
+	public void init() {
+		caches.put(AppConstants.JOB_EXECUTION_HASH_KEY,
+				new NearCache<>("job-execution", meterRegistry, maxEntries, maxEntries, record -> 1, timeToLive));
+		caches.put(AppConstants.STEP_EXECUTION_HASH_KEY,
+				new NearCache<>("step-execution", meterRegistry, maxEntries, maxEntries, record -> 1, timeToLive));
+	}
+
+	/**
+	 * @param jobExecutionId the execution id
+	 * @return the job execution record or {@code null} if it does not exist
+	 */
+	@Nullable
+	public RedisJobExecution getJobExecution(Long jobExecutionId) {
+		List<RedisJobExecution> result = getJobExecutions(Collections.singleton(String.valueOf(jobExecutionId)));
+		return result.isEmpty() ? null : result.get(0);
+	}
+
+	/**
+	 * Fetch the job execution records with the given ids, keeping the order of
+	 * the ids. Ids that do not exist are skipped.
+	 */
+	public List<RedisJobExecution> getJobExecutions(Collection<String> jobExecutionIds) {
+		return getAll(AppConstants.JOB_EXECUTION_HASH_KEY, AppConstants.JOB_EXECUTION_SET_KEY, jobExecutionIds,
+				RedisJobExecution::getVersion, RedisJobExecution::getJobExecutionId);
+	}
+
+	/**
+	 * Fetch the step execution records with the given ids, keeping the order of
+	 * the ids. Ids that do not exist are skipped.
+	 */
+	public List<RedisStepExecution> getStepExecutions(Collection<String> stepExecutionIds) {
+		return getAll(AppConstants.STEP_EXECUTION_HASH_KEY, AppConstants.STEP_EXECUTION_SET_KEY, stepExecutionIds,
+				RedisStepExecution::getVersion, RedisStepExecution::getStepExecutionId);
+	}
+
+	public void invalidateJobExecution(Long jobExecutionId) {
+		invalidate(AppConstants.JOB_EXECUTION_HASH_KEY, jobExecutionId);
+	}
+
+	public void invalidateStepExecution(Long stepExecutionId) {
+		invalidate(AppConstants.STEP_EXECUTION_HASH_KEY, stepExecutionId);
+	}
+
+	/**
+	 * Drops the entry named by an invalidation message, {@code hashKey|id}.
+	 */
+	@Override
+	public void onMessage(Message message, @Nullable byte[] pattern) {
+		String body = new String(message.getBody(), StandardCharsets.UTF_8);
+		int separator = body.indexOf(MESSAGE_SEPARATOR);
+		NearCache<Long, Object> cache = separator < 0 ? null : caches.get(body.substring(0, separator));
+		if (cache == null) {
+			LOGGER.warn("Ignoring invalidation message {}", body);
+			return;
+		}
+		synchronized (invalidations) {
+			invalidations.incrementAndGet();
+			cache.remove(Long.valueOf(body.substring(separator + 1)));
+		}
+	}
+
+	private void invalidate(String hashKey, Long id) {
+		if (!enabled) {
+			return;
+		}
+		synchronized (invalidations) {
+			invalidations.incrementAndGet();
+			caches.get(hashKey).remove(id);
+		}
+		stringRedisTemplate.convertAndSend(AppConstants.EXECUTION_INVALIDATION_CHANNEL,
+				hashKey + MESSAGE_SEPARATOR + id);
+	}
+
+	/**
+	 * Serves the cached records and reads the others with a single read. The
+	 * records read are only cached if no invalidation arrived during the read.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> List<T> getAll(String hashKey, String legacySetKey, Collection<String> ids,
+			Function<T, Integer> version, Function<T, Long> id) {
+		if (!enabled) {
+			return redisEntityStore.multiGet(hashKey, legacySetKey, ids, version);
+		}
+
+		NearCache<Long, Object> cache = caches.get(hashKey);
+		Map<Long, T> records = new HashMap<>();
+		List<String> missing = new ArrayList<>();
+		for (String recordId : ids) {
+			T cached = (T) cache.get(Long.valueOf(recordId));
+			if (cached != null) {
+				records.put(Long.valueOf(recordId), cached);
+			} else {
+				missing.add(recordId);
+			}
+		}
+
+		if (!missing.isEmpty()) {
+			long stamp = invalidations.get();
+			List<T> read = redisEntityStore.multiGet(hashKey, legacySetKey, missing, version);
+			for (T record : read) {
+				records.put(id.apply(record), record);
+			}
+			// Records read from the replica may lag behind the invalidations already
+			// received, so only records read from the primary are cached.
+			synchronized (invalidations) {
+				if (invalidations.get() == stamp && !ReplicaReadRouter.isReplicaRead()) {
+					for (T record : read) {
+						cache.put(id.apply(record), record);
+					}
+				}
+			}
+		}
+
+		List<T> result = new ArrayList<>(records.size());
+		for (String recordId : ids) {
+			T record = records.get(Long.valueOf(recordId));
+			if (record != null) {
+				result.add(record);
+			}
+		}
+		return result;
+	}
+
+}
@@ -3,12 +3,25 @@ package com.leo.app.dao;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -21,7 +34,14 @@ import org.springframework.batch.core.repository.ExecutionContextSerializer;
 import org.springframework.batch.core.repository.dao.DefaultExecutionContextSerializer;
 import org.springframework.batch.core.repository.dao.ExecutionContextDao;
 import org.springframework.batch.item.ExecutionContext;
-import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
@@ -29,12 +49,37 @@ import com.leo.app.dao.model.JobExecutionContext;
 import com.leo.app.dao.model.StepExecutionContext;
 import com.leo.app.util.AppConstants;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * ExecutionContextDao Redis implementation for persisting and retrieving
  * {@link ExecutionContext}s.
- * 
+ *
  * Stores execution context data related to both Step and Job.
- * 
+ *
+ * Every context is a hash with one field per context key. A field holds the
+ * Java serialized value behind a one byte header, deflated when it is larger
+ * than {@code repository.context.compression-threshold} bytes.
+ *
+ * The encoded entries last written for a context are kept, so an update only
+ * writes the entries that changed and deletes the ones that were removed. A
+ * context whose last write is not known, because it was evicted or written by
+ * another process, is rewritten in full.
+ *
+ * An update whose entries all encode the same as in the last write is
+ * skipped, and counted in the {@code repository.context.writes.skipped}
+ * metric. The dirty flag of the context is not used for this, as it only
+ * tells whether the last put changed a value and misses values changed in
+ * place. Immutable values, such as strings, numbers and enums, equal to the
+ * last written ones reuse their encoded form and are not serialized again;
+ * other values are serialized on every update. Saving a context always writes
+ * it.
+ *
+ * Contexts written by earlier versions, as {@link JobExecutionContext} and
+ * {@link StepExecutionContext} records in the legacy sorted sets, are still
+ * read.
+ *
  * @author anoop
  *
  */
@@ -43,19 +88,62 @@ public class RedisExecutionContextDao implements ExecutionContextDao {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(RedisExecutionContextDao.class);
 
-	private int shortContextLength = AppConstants.DEFAULT_MAX_VARCHAR_LENGTH;
+	private static final byte RAW_CONTEXT = 1;
+
+	private static final byte DEFLATED_CONTEXT = 2;
+
+	/**
+	 * Field present in every context hash, so an empty context can be told from
+	 * a context that is not stored in this layout.
+	 */
+	private static final String MARKER_FIELD = "\0";
+
+	private static final byte[] MARKER_VALUE = { RAW_CONTEXT };
+
+	@Value("${repository.context.compression-threshold:1024}")
+	private int compressionThreshold;
+
+	@Value("${repository.context.written-cache-size:1000}")
+	private int writtenCacheSize;
 
 	private ExecutionContextSerializer serializer;
 
-	@Resource(name = "redisTemplate")
-	ZSetOperations<String, JobExecutionContext> opsJobContextSortedSet;
+	private final Map<Long, Map<Long, ExecutionContext>> prefetchedContexts = new ConcurrentHashMap<>();
+
+	private Map<String, WrittenContext> writtenContexts;
+
+	private Counter skippedJobContextWrites;
+
+	private Counter skippedStepContextWrites;
+
+	@Resource(name = "byteArrayRedisTemplate")
+	HashOperations<String, String, byte[]> opsContextHash;
+
+	@Resource(name = "byteArrayRedisTemplate")
+	RedisTemplate<String, byte[]> byteArrayRedisTemplate;
+
+	@Autowired
+	RedisEntityStore redisEntityStore;
 
-	@Resource(name = "redisTemplate")
-	ZSetOperations<String, StepExecutionContext> opsStepContextSortedSet;
+	@Autowired
+	ReplicaReadRouter replicaReadRouter;
+
+	@Autowired
+	MeterRegistry meterRegistry;
 
 	@PostConstruct
 	public void init() {
 		serializer = new DefaultExecutionContextSerializer();
+		writtenContexts = Collections.synchronizedMap(new LinkedHashMap<String, WrittenContext>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<String, WrittenContext> eldest) {
+				return size() > writtenCacheSize;
+			}
+		});
+		skippedJobContextWrites = meterRegistry.counter("repository.context.writes.skipped", "kind", "job");
+		skippedStepContextWrites = meterRegistry.counter("repository.context.writes.skipped", "kind", "step");
 	}
 
 	/**
@@ -67,12 +155,8 @@ public class RedisExecutionContextDao implements ExecutionContextDao {
 		Long executionId = jobExecution.getId();
 		Assert.notNull(executionId, "Job Execution Id must not be null.");
 
-		Set<JobExecutionContext> executionContext = opsJobContextSortedSet
-				.rangeByScore(AppConstants.JOB_EXECUTION_CONTEXT, executionId, executionId);
-		if (!executionContext.isEmpty()) {
-			return getJobExecutionContext(executionContext.iterator().next());
-		}
-		return new ExecutionContext();
+		return getExecutionContexts(AppConstants.JOB_EXECUTION_CONTEXT_KEY_PREFIX, AppConstants.JOB_EXECUTION_CONTEXT,
+				Collections.singletonList(executionId)).get(executionId);
 	}
 
 	/**
@@ -85,13 +169,97 @@ public class RedisExecutionContextDao implements ExecutionContextDao {
 		Long executionId = stepExecution.getId();
 		Assert.notNull(executionId, "Step Execution Id must not be null.");
 
-		Set<StepExecutionContext> executionContext = opsStepContextSortedSet
-				.rangeByScore(AppConstants.STEP_EXECUTION_CONTEXT, executionId, executionId);
+		Map<Long, ExecutionContext> prefetched = prefetchedContexts.get(stepExecution.getJobExecutionId());
+		if (prefetched != null) {
+			ExecutionContext prefetchedContext = prefetched.remove(executionId);
+			if (prefetchedContext != null) {
+				return prefetchedContext;
+			}
+		}
+
+		return getExecutionContexts(Collections.singletonList(stepExecution)).get(executionId);
+	}
+
+	/**
+	 * Fetch a single entry of the context of the given job execution, without
+	 * reading the rest of the context.
+	 *
+	 * @param jobExecution {@link JobExecution} instance that contains the context.
+	 * @param key          the context key
+	 * @return the value or {@code null} if the context has no such key
+	 */
+	@Nullable
+	public Object getExecutionContextValue(JobExecution jobExecution, String key) {
+		Assert.notNull(jobExecution.getId(), "Job Execution Id must not be null.");
+
+		Object[] value = getStoredValue(AppConstants.JOB_EXECUTION_CONTEXT_KEY_PREFIX + jobExecution.getId(), key);
+		return value != null ? value[0] : getExecutionContext(jobExecution).get(key);
+	}
 
-		if (!executionContext.isEmpty()) {
-			return getStepExecutionContext(executionContext.iterator().next());
+	/**
+	 * Fetch a single entry of the context of the given step execution, without
+	 * reading the rest of the context.
+	 *
+	 * @param stepExecution {@link StepExecution} instance that contains the
+	 *                      context.
+	 * @param key           the context key
+	 * @return the value or {@code null} if the context has no such key
+	 */
+	@Nullable
+	public Object getExecutionContextValue(StepExecution stepExecution, String key) {
+		Assert.notNull(stepExecution.getId(), "Step Execution Id must not be null.");
+
+		Object[] value = getStoredValue(AppConstants.STEP_EXECUTION_CONTEXT_KEY_PREFIX + stepExecution.getId(), key);
+		return value != null ? value[0] : getExecutionContext(stepExecution).get(key);
+	}
+
+	/**
+	 * Load the execution contexts of the given step executions with a single
+	 * pipeline.
+	 *
+	 * @param stepExecutions the {@link StepExecution}s
+	 * @return the execution contexts by step execution id, an empty context for
+	 *         steps without a stored context
+	 */
+	public Map<Long, ExecutionContext> getExecutionContexts(Collection<StepExecution> stepExecutions) {
+		Assert.notNull(stepExecutions, "Attempt to load contexts of a null collection of step executions");
+
+		List<Long> executionIds = new ArrayList<>(stepExecutions.size());
+		for (StepExecution stepExecution : stepExecutions) {
+			Assert.notNull(stepExecution.getId(), "Step Execution Id must not be null.");
+			executionIds.add(stepExecution.getId());
+		}
+		return getExecutionContexts(AppConstants.STEP_EXECUTION_CONTEXT_KEY_PREFIX, AppConstants.STEP_EXECUTION_CONTEXT,
+				executionIds);
+	}
+
+	/**
+	 * Load the contexts of all step executions of the given job execution with a
+	 * single read and keep them until they are asked for. Each prefetched context
+	 * is handed out once by {@link #getExecutionContext(StepExecution)}, later
+	 * reads go to Redis again.
+	 *
+	 * Meant for the finished execution a restart resumes from, whose contexts do
+	 * not change any more.
+	 *
+	 * @param jobExecution the {@link JobExecution}, with its step executions
+	 */
+	public void prefetchExecutionContexts(JobExecution jobExecution) {
+		Assert.notNull(jobExecution.getId(), "Job Execution Id must not be null.");
+		if (!jobExecution.getStepExecutions().isEmpty()) {
+			prefetchedContexts.put(jobExecution.getId(),
+					new ConcurrentHashMap<>(getExecutionContexts(jobExecution.getStepExecutions())));
 		}
-		return new ExecutionContext();
+	}
+
+	/**
+	 * Drop the contexts prefetched for the given job execution that have not been
+	 * asked for.
+	 *
+	 * @param jobExecutionId the id of the {@link JobExecution}
+	 */
+	public void evictPrefetchedExecutionContexts(Long jobExecutionId) {
+		prefetchedContexts.remove(jobExecutionId);
 	}
 
 	/**
@@ -107,10 +275,8 @@ public class RedisExecutionContextDao implements ExecutionContextDao {
 		Assert.notNull(executionId, "Job ExecutionId must not be null.");
 		Assert.notNull(executionContext, "The Execution Context must not be null.");
 
-		String serializedContext = serializeContext(executionContext);
-
-		persistSerializedContext(executionId, serializedContext, AppConstants.JOB_EXECUTION_CONTEXT);
-
+		replicaReadRouter.recordWrite(jobExecution);
+		persistContext(AppConstants.JOB_EXECUTION_CONTEXT_KEY_PREFIX + executionId, executionContext, null, false);
 	}
 
 	/**
@@ -127,30 +293,45 @@ public class RedisExecutionContextDao implements ExecutionContextDao {
 		Assert.notNull(executionId, "Step ExecutionId must not be null.");
 		Assert.notNull(executionContext, "The Execution Context must not be null.");
 
-		String serializedContext = serializeContext(executionContext);
-
-		persistSerializedContext(executionId, serializedContext, AppConstants.STEP_EXECUTION_CONTEXT);
+		replicaReadRouter.recordWrite(stepExecution.getJobExecution());
+		persistContext(AppConstants.STEP_EXECUTION_CONTEXT_KEY_PREFIX + executionId, executionContext, null, false);
 	}
 
 	/**
 	 * Persist the execution context associated with each stepExecution in a given
 	 * collection, persistent entry for the context should not exist yet.
 	 *
+	 * All contexts are written in a single pipeline.
+	 *
 	 * @param stepExecutions a collection of {@link StepExecution}s that contain the
 	 *                       contexts.
 	 */
 	@Override
 	public void saveExecutionContexts(Collection<StepExecution> stepExecutions) {
 		Assert.notNull(stepExecutions, "Attempt to save an null collection of step executions");
-		Map<Long, String> serializedContexts = new HashMap<>(stepExecutions.size());
+		Map<String, WrittenContext> serializedContexts = new HashMap<>(stepExecutions.size());
 		for (StepExecution stepExecution : stepExecutions) {
 			Long executionId = stepExecution.getId();
 			ExecutionContext executionContext = stepExecution.getExecutionContext();
 			Assert.notNull(executionId, "ExecutionId must not be null.");
 			Assert.notNull(executionContext, "The ExecutionContext must not be null.");
-			serializedContexts.put(executionId, serializeContext(executionContext));
+			replicaReadRouter.recordWrite(stepExecution.getJobExecution());
+			serializedContexts.put(AppConstants.STEP_EXECUTION_CONTEXT_KEY_PREFIX + executionId,
+					serializeContext(executionContext, null));
+		}
+
+		if (!serializedContexts.isEmpty()) {
+			byteArrayRedisTemplate.executePipelined(new SessionCallback<Object>() {
+				@Override
+				public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+					for (Entry<String, WrittenContext> context : serializedContexts.entrySet()) {
+						opsContextHash.putAll(context.getKey(), context.getValue().entries);
+					}
+					return null;
+				}
+			});
+			writtenContexts.putAll(serializedContexts);
 		}
-		persistSerializedContexts(serializedContexts, AppConstants.STEP_EXECUTION_CONTEXT);
 	}
 
 	/**
@@ -166,9 +347,9 @@ public class RedisExecutionContextDao implements ExecutionContextDao {
 		Assert.notNull(executionId, "ExecutionId must not be null.");
 		Assert.notNull(executionContext, "The ExecutionContext must not be null.");
 
-		String serializedContext = serializeContext(executionContext);
-
-		persistSerializedContext(executionId, serializedContext, AppConstants.JOB_EXECUTION_CONTEXT);
+		replicaReadRouter.recordWrite(jobExecution);
+		persistContext(AppConstants.JOB_EXECUTION_CONTEXT_KEY_PREFIX + executionId, executionContext,
+				skippedJobContextWrites, jobExecution.getEndTime() != null);
 	}
 
 	/**
@@ -189,120 +370,265 @@ public class RedisExecutionContextDao implements ExecutionContextDao {
 			Assert.notNull(executionId, "ExecutionId must not be null.");
 			Assert.notNull(executionContext, "The ExecutionContext must not be null.");
 
-			String serializedContext = serializeContext(executionContext);
-
-			persistSerializedContext(executionId, serializedContext, AppConstants.STEP_EXECUTION_CONTEXT);
+			replicaReadRouter.recordWrite(stepExecution.getJobExecution());
+			persistContext(AppConstants.STEP_EXECUTION_CONTEXT_KEY_PREFIX + executionId, executionContext,
+					skippedStepContextWrites, stepExecution.getEndTime() != null);
 		}
 	}
 
-	private String serializeContext(ExecutionContext ctx) {
-		Map<String, Object> m = new HashMap<>();
-		for (Entry<String, Object> me : ctx.entrySet()) {
-			m.put(me.getKey(), me.getValue());
+	/**
+	 * Writes the entries of the context that differ from its last write and
+	 * deletes the removed ones, or the whole context if its last write is not
+	 * known.
+	 *
+	 * @param skippedWrites counts the skipped updates, {@code null} when saving a
+	 *                      new context, which is never skipped
+	 * @param finished      whether the execution has ended, its last write is not
+	 *                      kept then
+	 */
+	private void persistContext(String key, ExecutionContext executionContext, @Nullable Counter skippedWrites,
+			boolean finished) {
+		WrittenContext written = skippedWrites == null ? null : writtenContexts.get(key);
+		WrittenContext serializedContext = serializeContext(executionContext, written);
+		try {
+			if (!writeContext(key, serializedContext.entries, written == null ? null : written.entries)) {
+				skippedWrites.increment();
+			}
+		} catch (RuntimeException e) {
+			writtenContexts.remove(key);
+			throw e;
 		}
 
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		String results = "";
-
-		try {
-			serializer.serialize(m, out);
-			results = new String(out.toByteArray(), "ISO-8859-1");
-		} catch (IOException ioe) {
-			throw new IllegalArgumentException("Could not serialize the execution context", ioe);
+		if (finished) {
+			writtenContexts.remove(key);
+		} else {
+			writtenContexts.put(key, serializedContext);
 		}
+	}
+
+	/**
+	 * @return {@code false} if nothing differed from the last write
+	 */
+	private boolean writeContext(String key, Map<String, byte[]> serializedContext,
+			@Nullable Map<String, byte[]> written) {
+		if (written == null) {
+			byteArrayRedisTemplate.execute(new SessionCallback<List<Object>>() {
+				@Override
+				public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+					operations.multi();
+					byteArrayRedisTemplate.delete(key);
+					opsContextHash.putAll(key, serializedContext);
+					return operations.exec();
+				}
+			});
+			return true;
+		} else {
+			Map<String, byte[]> changed = new HashMap<>();
+			for (Entry<String, byte[]> entry : serializedContext.entrySet()) {
+				if (!Arrays.equals(entry.getValue(), written.get(entry.getKey()))) {
+					changed.put(entry.getKey(), entry.getValue());
+				}
+			}
+			List<Object> removed = new ArrayList<>();
+			for (String field : written.keySet()) {
+				if (!serializedContext.containsKey(field)) {
+					removed.add(field);
+				}
+			}
 
-		return results;
+			if (!changed.isEmpty() || !removed.isEmpty()) {
+				byteArrayRedisTemplate.execute(new SessionCallback<List<Object>>() {
+					@Override
+					public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+						operations.multi();
+						if (!changed.isEmpty()) {
+							opsContextHash.putAll(key, changed);
+						}
+						if (!removed.isEmpty()) {
+							opsContextHash.delete(key, removed.toArray());
+						}
+						return operations.exec();
+					}
+				});
+			}
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Context {}: wrote {} and deleted {} of {} entries", key, changed.size(), removed.size(),
+						serializedContext.size() - 1);
+			}
+			return !changed.isEmpty() || !removed.isEmpty();
+		}
 	}
 
-	private void persistSerializedContext(final Long executionId, String serializedContext, String contextKey) {
+	/**
+	 * Reads the contexts of the given executions: first the context hashes in one
+	 * pipeline, then the legacy context records of the missing ones.
+	 */
+	private Map<Long, ExecutionContext> getExecutionContexts(String keyPrefix, String legacySetKey,
+			List<Long> executionIds) {
 
-		final String shortContext;
-		final String longContext;
-		if (serializedContext.length() > shortContextLength) {
-			// Overestimate length of ellipsis to be on the safe side with
-			// 2-byte chars
-			shortContext = serializedContext.substring(0, shortContextLength - 8) + " ...";
-			longContext = serializedContext;
-		} else {
-			shortContext = serializedContext;
-			longContext = null;
+		Map<Long, ExecutionContext> result = new HashMap<>();
+		if (executionIds.isEmpty()) {
+			return result;
 		}
 
-		if (AppConstants.JOB_EXECUTION_CONTEXT.equals(contextKey)) {
-			JobExecutionContext context = new JobExecutionContext();
-			context.setJobExecutionId(executionId);
-			context.setShortContext(shortContext);
-			if (longContext != null) {
-				context.setSerializedContext(longContext);
+		List<Object> contexts = byteArrayRedisTemplate.executePipelined(new SessionCallback<Object>() {
+			@Override
+			public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+				for (Long executionId : executionIds) {
+					opsContextHash.entries(keyPrefix + executionId);
+				}
+				return null;
+			}
+		});
+
+		List<String> missing = new ArrayList<>();
+		for (int i = 0; i < executionIds.size(); i++) {
+			@SuppressWarnings("unchecked")
+			Map<String, byte[]> context = (Map<String, byte[]>) contexts.get(i);
+			if (context != null && context.containsKey(MARKER_FIELD)) {
+				result.put(executionIds.get(i), deserializeContext(context));
+			} else {
+				result.put(executionIds.get(i), new ExecutionContext());
+				missing.add(String.valueOf(executionIds.get(i)));
 			}
-			opsJobContextSortedSet.add(AppConstants.JOB_EXECUTION_CONTEXT, context, executionId);
-		} else if (AppConstants.STEP_EXECUTION_CONTEXT.equals(contextKey)) {
-			StepExecutionContext context = new StepExecutionContext();
-			context.setStepExecutionId(executionId);
-			context.setShortContext(shortContext);
-			if (longContext != null) {
-				context.setSerializedContext(longContext);
+		}
+		if (missing.isEmpty()) {
+			return result;
+		}
+
+		Map<String, Object> recordContexts = redisEntityStore.getLegacyEntities(legacySetKey, missing, null);
+		for (Object context : recordContexts.values()) {
+			if (context instanceof JobExecutionContext) {
+				JobExecutionContext jobContext = (JobExecutionContext) context;
+				result.put(jobContext.getJobExecutionId(),
+						getExecutionContext(jobContext.getShortContext(), jobContext.getSerializedContext()));
+			} else if (context instanceof StepExecutionContext) {
+				StepExecutionContext stepContext = (StepExecutionContext) context;
+				result.put(stepContext.getStepExecutionId(),
+						getExecutionContext(stepContext.getShortContext(), stepContext.getSerializedContext()));
 			}
-			opsStepContextSortedSet.add(AppConstants.STEP_EXECUTION_CONTEXT, context, executionId);
 		}
+		return result;
 	}
 
-	private void persistSerializedContexts(final Map<Long, String> serializedContexts, String contextKey) {
-		if (!serializedContexts.isEmpty()) {
-			final Iterator<Long> executionIdIterator = serializedContexts.keySet().iterator();
-
-			while (executionIdIterator.hasNext()) {
-				Long executionId = executionIdIterator.next();
-				String serializedContext = serializedContexts.get(executionId);
-				String shortContext;
-				String longContext;
-				if (serializedContext.length() > shortContextLength) {
-					// Overestimate length of ellipsis to be on the safe side with
-					// 2-byte chars
-					shortContext = serializedContext.substring(0, shortContextLength - 8) + " ...";
-					longContext = serializedContext;
-				} else {
-					shortContext = serializedContext;
-					longContext = null;
-				}
-				if (AppConstants.STEP_EXECUTION_CONTEXT.equals(contextKey)) {
-					StepExecutionContext context = new StepExecutionContext();
-					context.setStepExecutionId(executionId);
-					context.setShortContext(shortContext);
-					if (longContext != null) {
-						context.setSerializedContext(longContext);
-					}
-					opsStepContextSortedSet.add(AppConstants.STEP_EXECUTION_CONTEXT, context, executionId);
+	/**
+	 * @return the value wrapped in an array, or {@code null} if the context is not
+	 *         stored as a context hash
+	 */
+	@Nullable
+	private Object[] getStoredValue(String key, String field) {
+		List<byte[]> values = opsContextHash.multiGet(key, Arrays.asList(MARKER_FIELD, field));
+		if (values.get(0) == null) {
+			return null;
+		}
+		return new Object[] { values.get(1) == null ? null : decode(values.get(1)) };
+	}
+
+	/**
+	 * Serializes the value of every entry of the context on its own, keyed by the
+	 * context key, plus the marker field. An immutable value equal to the one in
+	 * the last write keeps its encoded form.
+	 *
+	 * @param written the last write of the context, {@code null} if not known
+	 */
+	private WrittenContext serializeContext(ExecutionContext ctx, @Nullable WrittenContext written) {
+		WrittenContext result = new WrittenContext();
+		for (Entry<String, Object> me : ctx.entrySet()) {
+			Object value = me.getValue();
+			byte[] encoded = null;
+			if (isImmutable(value)) {
+				if (written != null && value.equals(written.immutableValues.get(me.getKey()))) {
+					encoded = written.entries.get(me.getKey());
 				}
+				result.immutableValues.put(me.getKey(), value);
 			}
+			result.entries.put(me.getKey(), encoded != null ? encoded : encode(value));
 		}
+		result.entries.put(MARKER_FIELD, MARKER_VALUE);
+		return result;
+	}
+
+	/**
+	 * @return whether the value cannot change in place, so an equal value encodes
+	 *         the same
+	 */
+	private static boolean isImmutable(@Nullable Object value) {
+		return value instanceof String || value instanceof Long || value instanceof Integer
+				|| value instanceof Double || value instanceof Float || value instanceof Short
+				|| value instanceof Byte || value instanceof Boolean || value instanceof Character
+				|| value instanceof BigDecimal || value instanceof BigInteger || value instanceof Enum;
 	}
 
-	private ExecutionContext getJobExecutionContext(JobExecutionContext context) {
+	private ExecutionContext deserializeContext(Map<String, byte[]> context) {
 		ExecutionContext executionContext = new ExecutionContext();
-		String serializedContext = context.getSerializedContext();
-		if (serializedContext == null) {
-			serializedContext = context.getShortContext();
+		for (Entry<String, byte[]> field : context.entrySet()) {
+			if (!MARKER_FIELD.equals(field.getKey())) {
+				executionContext.put(field.getKey(), decode(field.getValue()));
+			}
 		}
+		return executionContext;
+	}
 
-		Map<String, Object> map;
+	/**
+	 * Serializes the value behind a one byte header, which tells whether the
+	 * payload has been deflated.
+	 */
+	private byte[] encode(Object value) {
 		try {
-			ByteArrayInputStream in = new ByteArrayInputStream(serializedContext.getBytes("ISO-8859-1"));
-			map = serializer.deserialize(in);
+			ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+			try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+				out.writeObject(value);
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(serialized.size() + 1);
+			if (serialized.size() > compressionThreshold) {
+				out.write(DEFLATED_CONTEXT);
+				Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+				try (DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater)) {
+					serialized.writeTo(deflated);
+				} finally {
+					deflater.end();
+				}
+			} else {
+				out.write(RAW_CONTEXT);
+				serialized.writeTo(out);
+			}
+			return out.toByteArray();
 		} catch (IOException ioe) {
-			throw new IllegalArgumentException("Unable to deserialize the execution context", ioe);
+			throw new IllegalArgumentException("Could not serialize the execution context", ioe);
 		}
-		for (Map.Entry<String, Object> entry : map.entrySet()) {
-			executionContext.put(entry.getKey(), entry.getValue());
+	}
+
+	private Object decode(byte[] value) {
+		InputStream in = new ByteArrayInputStream(value, 1, value.length - 1);
+		Inflater inflater = value[0] == DEFLATED_CONTEXT ? new Inflater(true) : null;
+		try {
+			if (inflater != null) {
+				in = new InflaterInputStream(in, inflater);
+			} else if (value[0] != RAW_CONTEXT) {
+				throw new IllegalArgumentException("Unknown execution context format " + value[0]);
+			}
+			try (ObjectInputStream objects = new ObjectInputStream(in)) {
+				return objects.readObject();
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			throw new IllegalArgumentException("Unable to deserialize the execution context", e);
+		} finally {
+			if (inflater != null) {
+				inflater.end();
+			}
 		}
-		return executionContext;
 	}
 
-	private ExecutionContext getStepExecutionContext(StepExecutionContext context) {
-		ExecutionContext executionContext = new ExecutionContext();
-		String serializedContext = context.getSerializedContext();
+	/**
+	 * Reads a context stored as a {@link JobExecutionContext} or
+	 * {@link StepExecutionContext} record, where the serialized context is kept
+	 * as an ISO-8859-1 string.
+	 */
+	private ExecutionContext getExecutionContext(String shortContext, String longContext) {
+		String serializedContext = longContext;
 		if (serializedContext == null) {
-			serializedContext = context.getShortContext();
+			serializedContext = shortContext;
 		}
 
 		Map<String, Object> map;
@@ -312,10 +638,27 @@ public class RedisExecutionContextDao implements ExecutionContextDao {
 		} catch (IOException ioe) {
 			throw new IllegalArgumentException("Unable to deserialize the execution context", ioe);
 		}
+		return toExecutionContext(map);
+	}
+
+	private ExecutionContext toExecutionContext(Map<String, Object> map) {
+		ExecutionContext executionContext = new ExecutionContext();
 		for (Map.Entry<String, Object> entry : map.entrySet()) {
 			executionContext.put(entry.getKey(), entry.getValue());
 		}
 		return executionContext;
 	}
 
+	/**
+	 * The encoded entries of a context as last written, with the immutable values
+	 * they were encoded from.
+	 */
+	private static final class WrittenContext {
+
+		private final Map<String, byte[]> entries = new HashMap<>();
+
+		private final Map<String, Object> immutableValues = new HashMap<>();
+
+	}
+
 }
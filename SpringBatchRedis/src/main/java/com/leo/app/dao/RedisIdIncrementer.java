@@ -0,0 +1,80 @@
+package com.leo.app.dao;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.util.Assert;
+
+/**
+ * {@link DataFieldMaxValueIncrementer} backed by a Redis counter, the Redis
+ * counterpart of the database sequences used by the JDBC job repository.
+ *
+ * Ids are leased from the counter in blocks (hi/lo): a single INCRBY reserves
+ * the next block for this JVM, and the ids of the block are then handed out
+ * locally. Ids are unique across nodes and threads, but with blocks of more
+ * than one id, ids from different nodes are not ordered by creation time. A
+ * block size of 1 keeps them ordered, at one INCRBY per id.
+ *
+ * A counter that does not exist yet is seeded with the current time in
+ * milliseconds, so the generated ids stay above the time based ids written by
+ * earlier versions.
+ *
+ * @author anoop
+ *
+ */
+public class RedisIdIncrementer implements DataFieldMaxValueIncrementer {
+
+	private final StringRedisTemplate stringRedisTemplate;
+
+	private final String sequenceKey;
+
+	private final int blockSize;
+
+	private boolean seeded;
+
+	private long nextId;
+
+	private long maxId;
+
+	public RedisIdIncrementer(StringRedisTemplate stringRedisTemplate, String sequenceKey, int blockSize) {
+		Assert.notNull(stringRedisTemplate, "StringRedisTemplate must not be null.");
+		Assert.hasLength(sequenceKey, "A sequence key is required");
+		Assert.isTrue(blockSize > 0, "The block size must be positive");
+		this.stringRedisTemplate = stringRedisTemplate;
+		this.sequenceKey = sequenceKey;
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	public synchronized long nextLongValue() throws DataAccessException {
+		if (nextId >= maxId) {
+			leaseBlock();
+		}
+		return ++nextId;
+	}
+
+	@Override
+	public int nextIntValue() throws DataAccessException {
+		return (int) nextLongValue();
+	}
+
+	@Override
+	public String nextStringValue() throws DataAccessException {
+		return String.valueOf(nextLongValue());
+	}
+
+	private void leaseBlock() {
+		if (!seeded) {
+			stringRedisTemplate.opsForValue().setIfAbsent(sequenceKey, String.valueOf(System.currentTimeMillis()));
+			seeded = true;
+		}
+		Long hi = stringRedisTemplate.opsForValue().increment(sequenceKey, blockSize);
+		if (hi == null) {
+			throw new DataAccessResourceFailureException("Could not lease an id block from " + sequenceKey);
+		}
+		maxId = hi;
+		nextId = hi - blockSize;
+	}
+
+}
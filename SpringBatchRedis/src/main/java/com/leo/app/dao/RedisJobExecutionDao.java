@@ -1,8 +1,8 @@
 package com.leo.app.dao;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -10,7 +10,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.regex.Pattern;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 
 import org.slf4j.Logger;
@@ -24,19 +26,37 @@ import org.springframework.batch.core.JobParameter.ParameterType;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.repository.dao.JobExecutionDao;
 import org.springframework.batch.core.repository.dao.NoSuchObjectException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
 import com.leo.app.dao.model.JobExecutionParams;
 import com.leo.app.dao.model.RedisJobExecution;
-import com.leo.app.dao.model.RedisJobInstance;
 import com.leo.app.util.AppConstants;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * Data Access Object - Redis implementation for job execution.
  * 
+ * The parameters of an execution never change once saved, they are kept in a
+ * {@link NearCache}.
+ * 
+ * The per-instance indexes miss the executions written before they existed,
+ * which {@link RedisLegacyIndex} adds on the first read of the instance.
+ * 
  * @author anoop
  *
  */
@@ -45,16 +65,68 @@ public class RedisJobExecutionDao implements JobExecutionDao {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(RedisJobInstanceDao.class);
 
+	private static final String PARAMETER_SEPARATOR = "|";
+
+	/**
+	 * Field present in every parameter hash, so an execution without parameters
+	 * still has one.
+	 */
+	private static final String PARAMETERS_MARKER_FIELD = "\0";
+
 	private int exitMessageLength = AppConstants.DEFAULT_MAX_VARCHAR_LENGTH;
 
 	@Resource(name = "redisTemplate")
-	ZSetOperations<String, RedisJobExecution> opsJobExecutionSortedSet;
+	HashOperations<String, String, RedisJobExecution> opsJobExecutionHash;
 
-	@Resource(name = "redisTemplate")
-	ZSetOperations<String, JobExecutionParams> opsJobExecutionParamsSortedSet;
+	@Resource(name = "stringRedisTemplate")
+	HashOperations<String, String, String> opsJobExecutionParamsHash;
+
+	@Resource(name = "stringRedisTemplate")
+	ZSetOperations<String, String> opsJobExecutionIdSortedSet;
+
+	@Resource(name = "stringRedisTemplate")
+	HashOperations<String, String, String> opsJobExecutionInstanceHash;
+
+	@Resource(name = "stringRedisTemplate")
+	HashOperations<String, String, String> opsVersionHash;
 
 	@Resource(name = "redisTemplate")
-	ZSetOperations<String, RedisJobInstance> opsJobInstanceSortedSet;
+	RedisTemplate<String, Object> redisTemplate;
+
+	@Resource(name = "stringRedisTemplate")
+	StringRedisTemplate stringRedisTemplate;
+
+	@Resource(name = "jobExecutionIncrementer")
+	DataFieldMaxValueIncrementer jobExecutionIncrementer;
+
+	@Autowired
+	RedisEntityStore redisEntityStore;
+
+	@Autowired
+	RedisExecutionCache redisExecutionCache;
+
+	@Autowired
+	ReplicaReadRouter replicaReadRouter;
+
+	@Autowired
+	RedisLegacyIndex redisLegacyIndex;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Value("${repository.near-cache.max-entries:10000}")
+	private int nearCacheMaxEntries;
+
+	@Value("${repository.near-cache.max-weight:4194304}")
+	private long nearCacheMaxWeight;
+
+	private NearCache<Long, JobParameters> jobParametersByExecution;
+
+	@PostConstruct
+	public void init() {
+		jobParametersByExecution = new NearCache<>("job-parameters", meterRegistry, nearCacheMaxEntries,
+				nearCacheMaxWeight, RedisJobExecutionDao::weigh);
+	}
 
 	/**
 	 * Save a new JobExecution.
@@ -70,14 +142,42 @@ public class RedisJobExecutionDao implements JobExecutionDao {
 		validateJobExecution(jobExecution);
 
 		jobExecution.incrementVersion();
-		jobExecution.setId(System.currentTimeMillis());
+		jobExecution.setId(jobExecutionIncrementer.nextLongValue());
+		replicaReadRouter.recordWrite(jobExecution);
 
 		RedisJobExecution redisJobExecution = new RedisJobExecution(jobExecution);
 
-		opsJobExecutionSortedSet.add(AppConstants.JOB_EXECUTION_SET_KEY, redisJobExecution,
-				redisJobExecution.getJobExecutionId());
+		redisTemplate.execute(new SessionCallback<List<Object>>() {
+			@Override
+			public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+				// The operations below run on the connection bound by this session, so
+				// the record, its index entries and the parameters are written in one
+				// MULTI/EXEC.
+				operations.multi();
+
+				opsJobExecutionHash.put(AppConstants.JOB_EXECUTION_HASH_KEY,
+						String.valueOf(redisJobExecution.getJobExecutionId()), redisJobExecution);
+
+				opsJobExecutionIdSortedSet.add(getJobInstanceIndexKey(redisJobExecution.getJobInstanceId()),
+						String.valueOf(redisJobExecution.getJobExecutionId()), redisJobExecution.getJobExecutionId());
+
+				opsJobExecutionInstanceHash.put(AppConstants.JOB_EXECUTION_INSTANCE_HASH_KEY,
+						String.valueOf(redisJobExecution.getJobExecutionId()),
+						String.valueOf(redisJobExecution.getJobInstanceId()));
+
+				opsVersionHash.put(AppConstants.JOB_EXECUTION_VERSION_HASH_KEY,
+						String.valueOf(redisJobExecution.getJobExecutionId()),
+						String.valueOf(redisJobExecution.getVersion()));
+
+				insertJobParameters(jobExecution.getId(), jobExecution.getJobParameters());
+
+				updateRunningIndex(jobExecution);
 
-		insertJobParameters(jobExecution.getId(), jobExecution.getJobParameters());
+				return operations.exec();
+			}
+		});
+
+		jobParametersByExecution.put(jobExecution.getId(), jobExecution.getJobParameters());
 	}
 
 	/**
@@ -110,32 +210,34 @@ public class RedisJobExecutionDao implements JobExecutionDao {
 				}
 			}
 
-			// Check if given JobExecution's Id already exists, if none is found
-			// it
-			// is invalid and
-			// an exception should be thrown.
-
-			Set<RedisJobExecution> executionCount = opsJobExecutionSortedSet
-					.rangeByScore(AppConstants.JOB_EXECUTION_SET_KEY, jobExecution.getId(), jobExecution.getId());
-			if (!executionCount.isEmpty() && executionCount.size() != 1) {
-				throw new NoSuchObjectException("Invalid JobExecution, ID " + jobExecution.getId() + " not found.");
-			}
-
 			RedisJobExecution redisJobExecution = new RedisJobExecution(jobExecution);
 			redisJobExecution.setVersion(version);
 			redisJobExecution.setExitMessage(exitDescription);
 
-			boolean count = opsJobExecutionSortedSet.add(AppConstants.JOB_EXECUTION_SET_KEY, redisJobExecution,
-					redisJobExecution.getJobExecutionId());
+			replicaReadRouter.recordWrite(jobExecution);
+
+			// The version check and the write run in one script, so a concurrent
+			// update between them is not possible.
+			Integer currentVersion = redisEntityStore.compareAndSet(AppConstants.JOB_EXECUTION_HASH_KEY,
+					AppConstants.JOB_EXECUTION_SET_KEY, AppConstants.JOB_EXECUTION_VERSION_HASH_KEY,
+					jobExecution.getId(), jobExecution.getVersion(), redisJobExecution, RedisJobExecution::getVersion);
+			redisExecutionCache.invalidateJobExecution(jobExecution.getId());
+
+			// Check if given JobExecution's Id already exists, if none is found
+			// it is invalid and an exception should be thrown.
+			if (currentVersion == null) {
+				throw new NoSuchObjectException("Invalid JobExecution, ID " + jobExecution.getId() + " not found.");
+			}
 
 			// Avoid concurrent modifications...
-			if (!count) {
-				int currentVersion = redisJobExecution.getVersion();
+			if (!currentVersion.equals(jobExecution.getVersion())) {
 				throw new OptimisticLockingFailureException(
 						"Attempt to update job execution id=" + jobExecution.getId() + " with wrong version ("
 								+ jobExecution.getVersion() + "), where current version is " + currentVersion);
 			}
 
+			updateRunningIndex(jobExecution);
+
 			redisJobExecution.incrementVersion();
 			jobExecution.incrementVersion();
 		}
@@ -152,21 +254,94 @@ public class RedisJobExecutionDao implements JobExecutionDao {
 	 */
 	@Override
 	public List<JobExecution> findJobExecutions(final JobInstance job) {
+		return findJobExecutions(job, -1);
+	}
+
+	/**
+	 * Return the last {@link JobExecution}s for given {@link JobInstance}, sorted
+	 * backwards by creation order (so the first element is the most recent). Only
+	 * the requested ids are read from the per-instance index.
+	 *
+	 * @param jobInstance parent {@link JobInstance} of the {@link JobExecution}s to
+	 *                    find.
+	 * @param count       the maximum number of executions to return, or -1 for
+	 *                    all
+	 * @return {@link List} containing JobExecutions for the jobInstance.
+	 */
+	public List<JobExecution> findJobExecutions(final JobInstance job, int count) {
 		Assert.notNull(job, "Job cannot be null.");
 		Assert.notNull(job.getId(), "Job Id cannot be null.");
-		
-		List<JobExecution> result = new ArrayList<>();
-		Set<RedisJobExecution> redisJobExecutions = opsJobExecutionSortedSet.range(AppConstants.JOB_EXECUTION_SET_KEY,
-				0, -1);
-		if (!redisJobExecutions.isEmpty()) {
-			for (RedisJobExecution redisJobExecution : redisJobExecutions) {
-				if (job.getId().equals(redisJobExecution.getJobInstanceId())) {
-					result.add(getJobExecution(redisJobExecution, job));
+
+		if (count == 0) {
+			return new ArrayList<>();
+		}
+
+		List<RedisJobExecution> legacyJobExecutions = redisLegacyIndex
+				.indexJobExecutions(Collections.singletonList(job.getId()));
+
+		Collection<String> jobExecutionIds = opsJobExecutionIdSortedSet
+				.reverseRange(getJobInstanceIndexKey(job.getId()), 0, count < 0 ? -1 : count - 1);
+		if (!legacyJobExecutions.isEmpty()) {
+			jobExecutionIds = mergeJobExecutionIds(jobExecutionIds, legacyJobExecutions, count);
+		}
+		if (jobExecutionIds == null || jobExecutionIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		return getJobExecutions(getRedisJobExecutions(jobExecutionIds), Collections.singletonMap(job.getId(), job));
+	}
+
+	/**
+	 * Return the {@link JobExecution}s of all given {@link JobInstance}s, grouped
+	 * by instance in the given order and sorted backwards by creation order
+	 * within an instance.
+	 * 
+	 * The execution ids of all instances, the execution records and the
+	 * parameters of all executions are each fetched in one round trip, however
+	 * many instances and executions there are.
+	 *
+	 * @param jobInstances the parent {@link JobInstance}s
+	 * @return the {@link JobExecution}s of the job instances
+	 */
+	public List<JobExecution> findJobExecutions(List<JobInstance> jobInstances) {
+		Assert.notNull(jobInstances, "Job instances cannot be null.");
+
+		if (jobInstances.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		List<Long> jobInstanceIds = new ArrayList<>();
+		for (JobInstance jobInstance : jobInstances) {
+			jobInstanceIds.add(jobInstance.getId());
+		}
+		Map<Long, List<RedisJobExecution>> legacyJobExecutions = new HashMap<>();
+		for (RedisJobExecution legacyJobExecution : redisLegacyIndex.indexJobExecutions(jobInstanceIds)) {
+			legacyJobExecutions.computeIfAbsent(legacyJobExecution.getJobInstanceId(), id -> new ArrayList<>())
+					.add(legacyJobExecution);
+		}
+
+		List<Object> jobExecutionIds = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+			@Override
+			public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+				for (JobInstance jobInstance : jobInstances) {
+					opsJobExecutionIdSortedSet.reverseRange(getJobInstanceIndexKey(jobInstance.getId()), 0, -1);
 				}
+				return null;
 			}
+		});
+
+		List<String> ids = new ArrayList<>();
+		Map<Long, JobInstance> jobInstancesById = new HashMap<>();
+		for (int i = 0; i < jobInstances.size(); i++) {
+			@SuppressWarnings("unchecked")
+			Collection<String> instanceExecutionIds = (Set<String>) jobExecutionIds.get(i);
+			if (legacyJobExecutions.containsKey(jobInstances.get(i).getId())) {
+				instanceExecutionIds = mergeJobExecutionIds(instanceExecutionIds,
+						legacyJobExecutions.get(jobInstances.get(i).getId()), -1);
+			}
+			ids.addAll(instanceExecutionIds);
+			jobInstancesById.put(jobInstances.get(i).getId(), jobInstances.get(i));
 		}
-		sortDescending(result);
-		return result;
+		return getJobExecutions(getRedisJobExecutions(ids), jobInstancesById);
 	}
 
 	/**
@@ -179,37 +354,25 @@ public class RedisJobExecutionDao implements JobExecutionDao {
 	@Override
 	public JobExecution getLastJobExecution(JobInstance jobInstance) {
 		
-		List<JobExecution> executions = new ArrayList<>();
-		Long maxId = null;
-		List<Long> jobExecutionIds = new ArrayList<>();
-
-		Set<RedisJobExecution> executionByJobInstance = opsJobExecutionSortedSet
-				.range(AppConstants.JOB_EXECUTION_SET_KEY, 0, -1);
-
-		if (!executionByJobInstance.isEmpty()) {
-			for (RedisJobExecution obj : executionByJobInstance) {
-				if (obj.getJobInstanceId().equals(jobInstance.getId())) {
-					jobExecutionIds.add(obj.getJobExecutionId());
-				}
-			}
-
-			Collections.sort(jobExecutionIds, Collections.reverseOrder());
-			maxId = jobExecutionIds.get(0);
-
-			for (RedisJobExecution obj : executionByJobInstance) {
-				if (obj.getJobInstanceId().equals(jobInstance.getId()) && obj.getJobExecutionId().equals(maxId)) {
-					executions.add(getJobExecution(obj, jobInstance));
-				}
-			}
+		Collection<String> jobExecutionIds = opsJobExecutionIdSortedSet
+				.reverseRange(getJobInstanceIndexKey(jobInstance.getId()), 0, 0);
+		if (jobExecutionIds == null || jobExecutionIds.isEmpty()) {
+			jobExecutionIds = mergeJobExecutionIds(null,
+					redisLegacyIndex.indexJobExecutions(Collections.singletonList(jobInstance.getId())), 1);
 		}
-		if (executions.isEmpty()) {
+		if (jobExecutionIds.isEmpty()) {
 			return null;
-		} else {
-			return executions.get(0);
 		}
+
+		List<JobExecution> jobExecutions = getJobExecutions(getRedisJobExecutions(jobExecutionIds),
+				Collections.singletonMap(jobInstance.getId(), jobInstance));
+		return jobExecutions.isEmpty() ? null : jobExecutions.get(0);
 	}
 
 	/**
+	 * Reads the running index of the job. Legacy executions are added to it by
+	 * the {@link RedisLegacyIndex} backfill.
+	 *
 	 * @param jobName {@link String} containing the name of the job.
 	 * @return all {@link JobExecution} that are still running (or indeterminate
 	 * state), i.e. having null end date, for the specified job name.
@@ -217,30 +380,18 @@ public class RedisJobExecutionDao implements JobExecutionDao {
 	@Override
 	public Set<JobExecution> findRunningJobExecutions(String jobName) {
 		
-		Set<RedisJobInstance> redisJobInstances = opsJobInstanceSortedSet.range(AppConstants.JOB_INSTANCE_SET_KEY, 0,
-				-1);
-		Set<RedisJobExecution> redisJobExecutions = opsJobExecutionSortedSet.range(AppConstants.JOB_EXECUTION_SET_KEY,
-				0, -1);
-
-		Set<JobExecution> result = new HashSet<>();
-
-		List<JobExecution> jobExecutions = new ArrayList<>();
-
-		if (!redisJobInstances.isEmpty() && !redisJobExecutions.isEmpty()) {
-			for (RedisJobInstance i : redisJobInstances) {
-				for (RedisJobExecution e : redisJobExecutions) {
-					if (jobName.equals(i.getJobName()) && i.getJobInstanceId().equals(e.getJobInstanceId())
-							&& e.getStartTime() != null && e.getEndTime() == null) {
-						jobExecutions.add(getJobExecution(e, null));
-					}
-				}
-			}
+		Set<String> jobExecutionIds = opsJobExecutionIdSortedSet.range(getRunningIndexKey(jobName), 0, -1);
+		if (jobExecutionIds == null || jobExecutionIds.isEmpty()) {
+			return new HashSet<>();
 		}
-		sortDescending(jobExecutions);
-		if (!jobExecutions.isEmpty()) {
-			result.add(jobExecutions.get(0));
+
+		List<RedisJobExecution> running = new ArrayList<>();
+		for (RedisJobExecution redisJobExecution : getRedisJobExecutions(jobExecutionIds)) {
+			if (redisJobExecution.getStartTime() != null && redisJobExecution.getEndTime() == null) {
+				running.add(redisJobExecution);
+			}
 		}
-		return result;
+		return new HashSet<>(getJobExecutions(running, Collections.emptyMap()));
 	}
 
 	/**
@@ -249,10 +400,9 @@ public class RedisJobExecutionDao implements JobExecutionDao {
 	 */
 	@Override
 	public JobExecution getJobExecution(Long executionId) {
-		Set<RedisJobExecution> redisJobExecutions = opsJobExecutionSortedSet
-				.rangeByScore(AppConstants.JOB_EXECUTION_SET_KEY, executionId, executionId);
-		if (!redisJobExecutions.isEmpty()) {
-			return getJobExecution(redisJobExecutions.iterator().next(), null);
+		RedisJobExecution redisJobExecution = getRedisJobExecution(executionId);
+		if (redisJobExecution != null) {
+			return getJobExecution(redisJobExecution, null, getJobParameters(executionId));
 		}
 		return null;
 	}
@@ -266,19 +416,14 @@ public class RedisJobExecutionDao implements JobExecutionDao {
 	 */
 	@Override
 	public void synchronizeStatus(JobExecution jobExecution) {
-		int currentVersion = 0;
-		Set<RedisJobExecution> redisJobExecutions = opsJobExecutionSortedSet
-				.rangeByScore(AppConstants.JOB_EXECUTION_SET_KEY, jobExecution.getId(), jobExecution.getId());
-		if (!redisJobExecutions.isEmpty()) {
-			for (RedisJobExecution execution : redisJobExecutions) {
-				currentVersion = execution.getVersion();
-
-				if (currentVersion != jobExecution.getVersion().intValue()) {
-					String status = execution.getStatus();
-					jobExecution.upgradeStatus(BatchStatus.valueOf(status));
-					jobExecution.setVersion(currentVersion);
-					break;
-				}
+		RedisJobExecution execution = getRedisJobExecution(jobExecution.getId());
+		if (execution != null) {
+			int currentVersion = execution.getVersion();
+
+			if (currentVersion != jobExecution.getVersion().intValue()) {
+				String status = execution.getStatus();
+				jobExecution.upgradeStatus(BatchStatus.valueOf(status));
+				jobExecution.setVersion(currentVersion);
 			}
 		}
 	}
@@ -294,93 +439,242 @@ public class RedisJobExecutionDao implements JobExecutionDao {
 	/**
 	 * Convenience method that inserts all parameters from the provided
 	 * JobParameters.
+	 * 
+	 * The parameters of an execution are stored in one hash, with the parameter
+	 * name as field and the type, identifying flag and value as a single
+	 * {@code TYPE|Y|value} string. They are written with a single HMSET, along
+	 * with an empty marker field, so executions without parameters have a hash
+	 * as well.
 	 *
 	 */
 	private void insertJobParameters(Long executionId, JobParameters jobParameters) {
+		opsJobExecutionParamsHash.putAll(getJobParametersKey(executionId),
+				encodeJobParameters(jobParameters.getParameters()));
+	}
+
+	/**
+	 * @return the fields of the parameter hash, including the marker field
+	 */
+	static Map<String, String> encodeJobParameters(Map<String, JobParameter> jobParameters) {
 
-		for (Entry<String, JobParameter> entry : jobParameters.getParameters().entrySet()) {
-			JobParameter jobParameter = entry.getValue();
-			insertParameter(executionId, jobParameter.getType(), entry.getKey(), jobParameter.getValue(),
-					jobParameter.isIdentifying());
+		Map<String, String> parameters = new HashMap<>();
+		for (Entry<String, JobParameter> entry : jobParameters.entrySet()) {
+			parameters.put(entry.getKey(), encodeParameter(entry.getValue()));
 		}
+		parameters.put(PARAMETERS_MARKER_FIELD, "");
+		return parameters;
 	}
 
-	private void insertParameter(Long executionId, ParameterType type, String key, Object value, boolean identifying) {
+	private static String encodeParameter(JobParameter jobParameter) {
 
-		String identifyingFlag = identifying ? "Y" : "N";
+		StringBuilder encoded = new StringBuilder();
+		encoded.append(jobParameter.getType()).append(PARAMETER_SEPARATOR);
+		encoded.append(jobParameter.isIdentifying() ? "Y" : "N");
 
-		JobExecutionParams jobExecutionParams = null;
+		Object value = jobParameter.getValue();
+		if (value != null) {
+			encoded.append(PARAMETER_SEPARATOR);
+			if (jobParameter.getType() == ParameterType.DATE) {
+				encoded.append(((Date) value).getTime());
+			} else {
+				encoded.append(value);
+			}
+		}
+		return encoded.toString();
+	}
 
-		if (type == ParameterType.STRING) {
-			jobExecutionParams = new JobExecutionParams(executionId, key, type.toString(), String.valueOf(value),
-					identifyingFlag);
-		} else if (type == ParameterType.LONG) {
-			jobExecutionParams = new JobExecutionParams(executionId, key, type.toString(),
-					Long.valueOf(String.valueOf(value)), identifyingFlag);
+	private JobParameter decodeParameter(String encoded) {
+
+		String[] parts = encoded.split(Pattern.quote(PARAMETER_SEPARATOR), 3);
+		ParameterType type = ParameterType.valueOf(parts[0]);
+		boolean identifying = parts[1].equalsIgnoreCase("Y");
+		String value = parts.length > 2 ? parts[2] : null;
+
+		if (type == ParameterType.LONG) {
+			return new JobParameter(value == null ? null : Long.valueOf(value), identifying);
 		} else if (type == ParameterType.DOUBLE) {
-			jobExecutionParams = new JobExecutionParams(executionId, key, type.toString(),
-					Double.valueOf(String.valueOf(value)), identifyingFlag);
+			return new JobParameter(value == null ? null : Double.valueOf(value), identifying);
 		} else if (type == ParameterType.DATE) {
-			Date dateVal = (Date) value;
-			jobExecutionParams = new JobExecutionParams(executionId, key, type.toString(), dateVal, identifyingFlag);
+			return new JobParameter(value == null ? null : new Date(Long.parseLong(value)), identifying);
 		}
+		return new JobParameter(value, identifying);
+	}
 
-		if (jobExecutionParams != null) {
-			opsJobExecutionParamsSortedSet.add(AppConstants.JOB_EXECUTION_PARAMS_SET_KEY, jobExecutionParams,
-					jobExecutionParams.getJobExecutionId());
-		}
+	protected JobParameters getJobParameters(Long executionId) {
+		return getJobParameters(Collections.singletonList(executionId)).get(executionId);
 	}
 
-	private void sortDescending(List<JobExecution> result) {
-		Collections.sort(result, new Comparator<JobExecution>() {
+	/**
+	 * Fetch the parameters of all given executions in one pipeline. Executions
+	 * without a parameter hash are looked up in the legacy parameter set, again
+	 * in one pipeline, while the legacy records are not indexed yet; the
+	 * backfill copies the legacy parameters into parameter hashes.
+	 * 
+	 * The parameters of an execution never change, so they are served from the
+	 * near cache where possible.
+	 */
+	private Map<Long, JobParameters> getJobParameters(List<Long> allExecutionIds) {
+
+		Map<Long, JobParameters> result = new HashMap<>();
+		List<Long> executionIds = new ArrayList<>();
+		for (Long executionId : allExecutionIds) {
+			JobParameters cached = jobParametersByExecution.get(executionId);
+			if (cached != null) {
+				result.put(executionId, cached);
+			} else {
+				executionIds.add(executionId);
+			}
+		}
+		if (executionIds.isEmpty()) {
+			return result;
+		}
+
+		List<Object> records = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
 			@Override
-			public int compare(JobExecution o1, JobExecution o2) {
-				return Long.signum(o2.getId() - o1.getId());
+			public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+				for (Long executionId : executionIds) {
+					opsJobExecutionParamsHash.entries(getJobParametersKey(executionId));
+				}
+				return null;
 			}
 		});
+
+		List<Long> missing = new ArrayList<>();
+		for (int i = 0; i < executionIds.size(); i++) {
+			@SuppressWarnings("unchecked")
+			Map<String, String> parameters = (Map<String, String>) records.get(i);
+			if (parameters == null || parameters.isEmpty()) {
+				missing.add(executionIds.get(i));
+				continue;
+			}
+
+			final Map<String, JobParameter> map = new HashMap<>();
+			for (Entry<String, String> parameter : parameters.entrySet()) {
+				if (!PARAMETERS_MARKER_FIELD.equals(parameter.getKey())) {
+					map.put(parameter.getKey(), decodeParameter(parameter.getValue()));
+				}
+			}
+			JobParameters jobParameters = new JobParameters(map);
+			jobParametersByExecution.put(executionIds.get(i), jobParameters);
+			result.put(executionIds.get(i), jobParameters);
+		}
+
+		if (!missing.isEmpty()) {
+			Map<Long, List<JobExecutionParams>> legacy = redisLegacyIndex.isPending()
+					? getLegacyJobParameters(missing)
+					: Collections.emptyMap();
+			for (Long executionId : missing) {
+				JobParameters jobParameters = toJobParameters(
+						legacy.getOrDefault(executionId, Collections.emptyList()));
+				jobParametersByExecution.put(executionId, jobParameters);
+				result.put(executionId, jobParameters);
+			}
+		}
+		return result;
 	}
 
-	protected JobParameters getJobParameters(Long executionId) {
-		
+	/**
+	 * Rough size of the parameters in characters, the weight in the near cache.
+	 */
+	private static long weigh(JobParameters jobParameters) {
+		long weight = 16;
+		for (Entry<String, JobParameter> parameter : jobParameters.getParameters().entrySet()) {
+			weight += parameter.getKey().length() + String.valueOf(parameter.getValue()).length() + 16;
+		}
+		return weight;
+	}
+
+	private JobParameters toJobParameters(List<JobExecutionParams> jobExecutionParams) {
+
 		final Map<String, JobParameter> map = new HashMap<>();
-		ParameterType type = null;
+		for (JobExecutionParams parameter : jobExecutionParams) {
+			map.put(parameter.getKeyName(), toJobParameter(parameter));
+		}
+		return new JobParameters(map);
+	}
+
+	static JobParameter toJobParameter(JobExecutionParams parameter) {
+		ParameterType type = ParameterType.valueOf(parameter.getTypeCd());
+		boolean identifying = parameter.getIdentifying().equalsIgnoreCase("Y");
 		JobParameter value = null;
 
-		Set<JobExecutionParams> jobExecutionParams = opsJobExecutionParamsSortedSet
-				.rangeByScore(AppConstants.JOB_EXECUTION_PARAMS_SET_KEY, executionId, executionId);
-
-		if (!jobExecutionParams.isEmpty()) {
-			for (JobExecutionParams parameter : jobExecutionParams) {
-				type = ParameterType.valueOf(parameter.getTypeCd());
-
-				if (type == ParameterType.STRING) {
-					value = new JobParameter(parameter.getStringVal(),
-							parameter.getIdentifying().equalsIgnoreCase("Y"));
-				} else if (type == ParameterType.LONG) {
-					value = new JobParameter(parameter.getLongVal(), parameter.getIdentifying().equalsIgnoreCase("Y"));
-				} else if (type == ParameterType.DOUBLE) {
-					value = new JobParameter(parameter.getDoubleVal(),
-							parameter.getIdentifying().equalsIgnoreCase("Y"));
-				} else if (type == ParameterType.DATE) {
-					value = new JobParameter(parameter.getDateVal(), parameter.getIdentifying().equalsIgnoreCase("Y"));
-				}
+		if (type == ParameterType.STRING) {
+			value = new JobParameter(parameter.getStringVal(), identifying);
+		} else if (type == ParameterType.LONG) {
+			value = new JobParameter(parameter.getLongVal(), identifying);
+		} else if (type == ParameterType.DOUBLE) {
+			value = new JobParameter(parameter.getDoubleVal(), identifying);
+		} else if (type == ParameterType.DATE) {
+			value = new JobParameter(parameter.getDateVal(), identifying);
+		}
 
-				// No need to assert that value is not null because it's an enum
-				map.put(parameter.getKeyName(), value);
+		// No need to assert that value is not null because it's an enum
+		return value;
+	}
+
+	/**
+	 * Parameters of executions saved before the parameter hash existed are
+	 * members of the shared parameter set, scored by execution id. They are read
+	 * as raw bytes, because the members of one execution are equal to each other
+	 * once deserialized.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<Long, List<JobExecutionParams>> getLegacyJobParameters(List<Long> executionIds) {
+
+		byte[] rawKey = redisTemplate.getStringSerializer().serialize(AppConstants.JOB_EXECUTION_PARAMS_SET_KEY);
+		List<Object> records = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+			for (Long executionId : executionIds) {
+				connection.zRangeByScore(rawKey, executionId, executionId);
+			}
+			return null;
+		}, null);
 
+		Map<Long, List<JobExecutionParams>> result = new HashMap<>();
+		for (int i = 0; i < executionIds.size(); i++) {
+			List<JobExecutionParams> parameters = new ArrayList<>();
+			for (byte[] member : (Set<byte[]>) records.get(i)) {
+				parameters.add((JobExecutionParams) redisTemplate.getValueSerializer().deserialize(member));
 			}
+			result.put(executionIds.get(i), parameters);
 		}
-		return new JobParameters(map);
+		return result;
+	}
+
+	/**
+	 * Builds the {@link JobExecution}s for the given records, keeping their order.
+	 * The parameters of all executions are fetched with a single pipeline.
+	 * 
+	 * @param jobInstances the job instances to attach, by id; executions of other
+	 *                     instances are built without their instance
+	 */
+	private List<JobExecution> getJobExecutions(List<RedisJobExecution> redisJobExecutions,
+			Map<Long, JobInstance> jobInstances) {
+
+		List<JobExecution> result = new ArrayList<>(redisJobExecutions.size());
+		if (redisJobExecutions.isEmpty()) {
+			return result;
+		}
+
+		List<Long> executionIds = new ArrayList<>(redisJobExecutions.size());
+		for (RedisJobExecution redisJobExecution : redisJobExecutions) {
+			executionIds.add(redisJobExecution.getJobExecutionId());
+		}
+		Map<Long, JobParameters> jobParameters = getJobParameters(executionIds);
+
+		for (RedisJobExecution redisJobExecution : redisJobExecutions) {
+			result.add(getJobExecution(redisJobExecution, jobInstances.get(redisJobExecution.getJobInstanceId()),
+					jobParameters.get(redisJobExecution.getJobExecutionId())));
+		}
+		return result;
 	}
 
-	private JobExecution getJobExecution(RedisJobExecution redisJobExecution, JobInstance jobInstance) {
+	private JobExecution getJobExecution(RedisJobExecution redisJobExecution, JobInstance jobInstance,
+			JobParameters jobParameters) {
 		JobExecution jobExecution;
 
 		Long id = redisJobExecution.getJobExecutionId();
 		String jobConfigurationLocation = redisJobExecution.getJobConfigurationLocation();
 
-		JobParameters jobParameters = getJobParameters(id);
-
 		if (jobInstance == null) {
 			jobExecution = new JobExecution(id, jobParameters, jobConfigurationLocation);
 		} else {
@@ -396,4 +690,64 @@ public class RedisJobExecutionDao implements JobExecutionDao {
 		jobExecution.setVersion(redisJobExecution.getVersion());
 		return jobExecution;
 	}
+
+	private RedisJobExecution getRedisJobExecution(Long jobExecutionId) {
+		return redisExecutionCache.getJobExecution(jobExecutionId);
+	}
+
+	/**
+	 * Loads the execution records for the given ids from the execution cache or
+	 * with a single read, keeping the order of the ids.
+	 */
+	private List<RedisJobExecution> getRedisJobExecutions(Collection<String> jobExecutionIds) {
+		return redisExecutionCache.getJobExecutions(jobExecutionIds);
+	}
+
+	/**
+	 * Merges the ids read from the per-instance index with the ids of the legacy
+	 * executions found for the instance, latest first.
+	 *
+	 * @param count the maximum number of ids to return, or -1 for all
+	 */
+	private List<String> mergeJobExecutionIds(@Nullable Collection<String> jobExecutionIds,
+			List<RedisJobExecution> legacyJobExecutions, int count) {
+		List<Long> legacyJobExecutionIds = new ArrayList<>();
+		for (RedisJobExecution legacyJobExecution : legacyJobExecutions) {
+			legacyJobExecutionIds.add(legacyJobExecution.getJobExecutionId());
+		}
+		List<String> result = new ArrayList<>();
+		for (Long jobExecutionId : RedisLegacyIndex.mergeIds(jobExecutionIds, legacyJobExecutionIds)) {
+			if (result.size() == count) {
+				break;
+			}
+			result.add(String.valueOf(jobExecutionId));
+		}
+		return result;
+	}
+
+	/**
+	 * Keeps the running index of the job in line with the execution: the id is
+	 * added once the execution has a start time and removed when it gets an end
+	 * time.
+	 */
+	private void updateRunningIndex(JobExecution jobExecution) {
+		String runningIndexKey = getRunningIndexKey(jobExecution.getJobInstance().getJobName());
+		if (jobExecution.getEndTime() != null) {
+			opsJobExecutionIdSortedSet.remove(runningIndexKey, String.valueOf(jobExecution.getId()));
+		} else if (jobExecution.getStartTime() != null) {
+			opsJobExecutionIdSortedSet.add(runningIndexKey, String.valueOf(jobExecution.getId()), jobExecution.getId());
+		}
+	}
+
+	static String getRunningIndexKey(String jobName) {
+		return AppConstants.RUNNING_JOB_EXECUTION_KEY_PREFIX + jobName;
+	}
+
+	static String getJobParametersKey(Long jobExecutionId) {
+		return AppConstants.JOB_EXECUTION_PARAMS_KEY_PREFIX + jobExecutionId;
+	}
+
+	static String getJobInstanceIndexKey(Long jobInstanceId) {
+		return AppConstants.JOB_EXECUTION_BY_INSTANCE_KEY_PREFIX + jobInstanceId;
+	}
 }
@@ -3,10 +3,13 @@ package com.leo.app.dao;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 
 import org.slf4j.Logger;
@@ -18,19 +21,40 @@ import org.springframework.batch.core.JobKeyGenerator;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.launch.NoSuchJobException;
 import org.springframework.batch.core.repository.dao.JobInstanceDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisZSetCommands.Range;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
-import org.springframework.util.StringUtils;
 
-import com.leo.app.dao.model.RedisJobExecution;
 import com.leo.app.dao.model.RedisJobInstance;
 import com.leo.app.util.AppConstants;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * Data Access Object - Redis implementation for job instances.
  * 
+ * Job instances never change once created, so the lookups by id, by job key and
+ * by execution are kept in {@link NearCache}s, bounded by
+ * {@code repository.near-cache.max-entries} and
+ * {@code repository.near-cache.max-weight}. Lookups that find nothing are not
+ * cached.
+ * 
+ * The name and job key indexes miss the job instances written before they
+ * existed until {@link RedisLegacyIndex} has indexed them. Before that, the
+ * first read of a name looks them up in the legacy set and merges them with the
+ * index, the same goes for the instances of legacy job executions.
+ * 
  * @author anoop
  *
  */
@@ -40,16 +64,65 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 	private static final Logger LOGGER = LoggerFactory.getLogger(RedisJobInstanceDao.class);
 
 	@Resource(name = "redisTemplate")
-	ZSetOperations<String, RedisJobInstance> opsJobInstanceSortedSet;
+	HashOperations<String, String, RedisJobInstance> opsJobInstanceHash;
 
 	@Resource(name = "redisTemplate")
 	ZSetOperations<String, String> opsJobInstanceString;
 
+	@Resource(name = "stringRedisTemplate")
+	ZSetOperations<String, String> opsJobInstanceIdSortedSet;
+
+	@Resource(name = "stringRedisTemplate")
+	ZSetOperations<String, String> opsJobNameIndex;
+
+	@Resource(name = "stringRedisTemplate")
+	HashOperations<String, String, String> opsJobInstanceIdHash;
+
+	@Resource(name = "stringRedisTemplate")
+	StringRedisTemplate stringRedisTemplate;
+
 	@Resource(name = "redisTemplate")
-	ZSetOperations<String, RedisJobExecution> opsJobExecutionSortedSet;
+	RedisTemplate<String, Object> redisTemplate;
+
+	@Resource(name = "jobInstanceIncrementer")
+	DataFieldMaxValueIncrementer jobIncrementer;
+
+	@Autowired
+	RedisEntityStore redisEntityStore;
+
+	@Autowired
+	ReplicaReadRouter replicaReadRouter;
+
+	@Autowired
+	RedisLegacyIndex redisLegacyIndex;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Value("${repository.near-cache.max-entries:10000}")
+	private int nearCacheMaxEntries;
+
+	@Value("${repository.near-cache.max-weight:4194304}")
+	private long nearCacheMaxWeight;
 
 	private JobKeyGenerator<JobParameters> jobKeyGenerator = new DefaultJobKeyGenerator();
 
+	private NearCache<Long, String> jobNamesById;
+
+	private NearCache<String, Long> jobInstanceIdsByJobKey;
+
+	private NearCache<Long, Long> jobInstanceIdsByExecution;
+
+	@PostConstruct
+	public void init() {
+		jobNamesById = new NearCache<>("job-instance", meterRegistry, nearCacheMaxEntries, nearCacheMaxWeight,
+				jobName -> jobName.length() + 16);
+		jobInstanceIdsByJobKey = new NearCache<>("job-instance-key", meterRegistry, nearCacheMaxEntries,
+				nearCacheMaxWeight, jobInstanceId -> 64);
+		jobInstanceIdsByExecution = new NearCache<>("job-execution-instance", meterRegistry, nearCacheMaxEntries,
+				nearCacheMaxWeight, jobInstanceId -> 16);
+	}
+
 	/**
 	 * Create a JobInstance with given name and parameters.
 	 *
@@ -71,7 +144,7 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 
 		Assert.state(getJobInstance(jobName, jobParameters) == null, "JobInstance must not already exist");
 
-		Long jobId = System.currentTimeMillis();
+		Long jobId = jobIncrementer.nextLongValue();
 
 		RedisJobInstance redisJobInstance = new RedisJobInstance(jobId, jobName);
 		redisJobInstance.setJobKey(jobKeyGenerator.generateKey(jobParameters));
@@ -80,11 +153,33 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 		JobInstance jobInstance = new JobInstance(jobId, jobName);
 		jobInstance.incrementVersion();
 
-		opsJobInstanceSortedSet.add(AppConstants.JOB_INSTANCE_SET_KEY, redisJobInstance,
-				redisJobInstance.getJobInstanceId());
+		// Recorded before the write, so no read of this node can see the write on
+		// the primary and then miss it on the replica.
+		replicaReadRouter.recordWrite(jobInstance);
 
-		opsJobInstanceString.add(AppConstants.JOB_INSTANCE_STRING_KEY, redisJobInstance.getJobName(),
-				redisJobInstance.getJobInstanceId());
+		redisTemplate.execute(new SessionCallback<List<Object>>() {
+			@Override
+			public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+				// The operations below run on the connection bound by this session, so
+				// the record and its indexes are written in one MULTI/EXEC.
+				operations.multi();
+
+				opsJobInstanceHash.put(AppConstants.JOB_INSTANCE_HASH_KEY, String.valueOf(jobId), redisJobInstance);
+
+				// All names share score 0, so the index is ordered by name and can be
+				// queried by prefix with ZRANGEBYLEX.
+				opsJobNameIndex.add(AppConstants.JOB_NAME_INDEX_KEY, jobName, 0);
+
+				opsJobInstanceIdSortedSet.add(getJobNameIndexKey(jobName), String.valueOf(jobId), jobId);
+
+				opsJobInstanceIdHash.put(AppConstants.JOB_INSTANCE_JOB_KEY_HASH_KEY,
+						getJobKeyField(jobName, redisJobInstance.getJobKey()), String.valueOf(jobId));
+
+				return operations.exec();
+			}
+		});
+		jobNamesById.put(jobId, jobName);
+		jobInstanceIdsByJobKey.put(getJobKeyField(jobName, redisJobInstance.getJobKey()), jobId);
 		return jobInstance;
 
 	}
@@ -103,45 +198,27 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 		Assert.notNull(jobName, "Job name must not be null.");
 		Assert.notNull(jobParameters, "JobParameters must not be null.");
 
-		String jobKey = jobKeyGenerator.generateKey(jobParameters);
+		String jobKeyField = getJobKeyField(jobName, jobKeyGenerator.generateKey(jobParameters));
 
-		List<JobInstance> result = new ArrayList<>();
-		JobInstance jobInstance = null;
-
-		if (StringUtils.hasLength(jobKey)) {
-			Set<RedisJobInstance> redisJobInstances = opsJobInstanceSortedSet.range(AppConstants.JOB_INSTANCE_SET_KEY,
-					0, -1);
-			if (!redisJobInstances.isEmpty()) {
-				for (RedisJobInstance redisJobInstance : redisJobInstances) {
-					if (redisJobInstance.getJobName().equals(jobName) && redisJobInstance.getJobKey().equals(jobKey)) {
-						jobInstance = new JobInstance(redisJobInstance.getJobInstanceId(),
-								redisJobInstance.getJobName());
-						result.add(jobInstance);
-					}
-				}
-			}
-		} else {
-
-			Set<RedisJobInstance> redisJobInstances = opsJobInstanceSortedSet.range(AppConstants.JOB_INSTANCE_SET_KEY,
-					0, -1);
-			if (!redisJobInstances.isEmpty()) {
-				for (RedisJobInstance redisJobInstance : redisJobInstances) {
-					if ((redisJobInstance.getJobName().equals(jobName)) && ((redisJobInstance.getJobKey() == null)
-							|| (redisJobInstance.getJobKey().equals(jobKey)))) {
-						jobInstance = new JobInstance(redisJobInstance.getJobInstanceId(),
-								redisJobInstance.getJobName());
-						result.add(jobInstance);
-					}
+		Long cachedJobInstanceId = jobInstanceIdsByJobKey.get(jobKeyField);
+		if (cachedJobInstanceId != null) {
+			return new JobInstance(cachedJobInstanceId, jobName);
+		}
+
+		String jobInstanceId = opsJobInstanceIdHash.get(AppConstants.JOB_INSTANCE_JOB_KEY_HASH_KEY, jobKeyField);
+		if (jobInstanceId == null) {
+			for (RedisJobInstance legacyJobInstance : redisLegacyIndex.indexJobInstances(jobName)) {
+				if (jobKeyField.equals(getJobKeyField(legacyJobInstance.getJobName(), legacyJobInstance.getJobKey()))) {
+					jobInstanceId = String.valueOf(legacyJobInstance.getJobInstanceId());
+					break;
 				}
 			}
 		}
-
-		if (result.isEmpty()) {
+		if (jobInstanceId == null) {
 			return null;
-		} else {
-			Assert.state(result.size() == 1, "instance count must be 1 but was " + result.size());
-			return result.get(0);
 		}
+		jobInstanceIdsByJobKey.put(jobKeyField, Long.valueOf(jobInstanceId));
+		return new JobInstance(Long.valueOf(jobInstanceId), jobName);
 	}
 
 	/**
@@ -154,18 +231,18 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 	@Override
 	public JobInstance getJobInstance(Long instanceId) {
 
-		JobInstance jobInstance = null;
-
-		Set<RedisJobInstance> setjobInstances = opsJobInstanceSortedSet.rangeByScore(AppConstants.JOB_INSTANCE_SET_KEY,
-				instanceId, instanceId);
-		if (!setjobInstances.isEmpty()) {
-			for (RedisJobInstance instance : setjobInstances) {
-				jobInstance = new JobInstance(instance.getJobInstanceId(), instance.getJobName());
-				jobInstance.incrementVersion();
-			}
+		String jobName = jobNamesById.get(instanceId);
+		if (jobName != null) {
+			return getJobInstance(new RedisJobInstance(instanceId, jobName));
 		}
 
-		return jobInstance;
+		RedisJobInstance redisJobInstance = redisEntityStore.get(AppConstants.JOB_INSTANCE_HASH_KEY,
+				AppConstants.JOB_INSTANCE_SET_KEY, instanceId, RedisJobInstance::getVersion);
+		if (redisJobInstance == null) {
+			return null;
+		}
+		jobNamesById.put(instanceId, redisJobInstance.getJobName());
+		return getJobInstance(redisJobInstance);
 	}
 
 	/**
@@ -178,24 +255,20 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 	@Override
 	public JobInstance getJobInstance(JobExecution jobExecution) {
 
-		Set<RedisJobInstance> redisJobInstances = opsJobInstanceSortedSet.range(AppConstants.JOB_INSTANCE_SET_KEY, 0,
-				-1);
-		Set<RedisJobExecution> redisJobExecutions = opsJobExecutionSortedSet.range(AppConstants.JOB_EXECUTION_SET_KEY,
-				0, -1);
-		if (!redisJobInstances.isEmpty() && !redisJobExecutions.isEmpty()) {
-			for (RedisJobInstance ji : redisJobInstances) {
-				for (RedisJobExecution je : redisJobExecutions) {
-					if (je.getJobExecutionId().equals(jobExecution.getId())
-							&& ji.getJobInstanceId().equals(je.getJobInstanceId())) {
-						JobInstance jobInstance = new JobInstance(ji.getJobInstanceId(), ji.getJobName());
-						// should always be at version=0 because they never get updated
-						jobInstance.incrementVersion();
-						return jobInstance;
-					}
-				}
-			}
+		Long cachedJobInstanceId = jobInstanceIdsByExecution.get(jobExecution.getId());
+		if (cachedJobInstanceId != null) {
+			return getJobInstance(cachedJobInstanceId);
 		}
-		return null;
+
+		String jobInstanceId = opsJobInstanceIdHash.get(AppConstants.JOB_EXECUTION_INSTANCE_HASH_KEY,
+				String.valueOf(jobExecution.getId()));
+		Long id = jobInstanceId == null ? redisLegacyIndex.findJobInstanceId(jobExecution.getId())
+				: Long.valueOf(jobInstanceId);
+		if (id == null) {
+			return null;
+		}
+		jobInstanceIdsByExecution.put(jobExecution.getId(), id);
+		return getJobInstance(id);
 	}
 
 	/**
@@ -215,22 +288,31 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 	public List<JobInstance> getJobInstances(String jobName, int start, int count) {
 
 		List<JobInstance> result = new ArrayList<>();
-		JobInstance jobInstance = null;
-		Set<RedisJobInstance> redisJobInstances = opsJobInstanceSortedSet.range(AppConstants.JOB_INSTANCE_SET_KEY, 0,
-				-1);
-		if (!redisJobInstances.isEmpty()) {
-			for (RedisJobInstance redisJobInstance : redisJobInstances) {
-				if (redisJobInstance.getJobName().equals(jobName)) {
-					jobInstance = new JobInstance(redisJobInstance.getJobInstanceId(), redisJobInstance.getJobName());
-					result.add(jobInstance);
-				}
-			}
+		if (count <= 0) {
+			return result;
 		}
 
-		sortDescending(result);
-
-		return subset(result, start, count);
+		List<RedisJobInstance> legacyJobInstances = redisLegacyIndex.indexJobInstances(jobName);
+		if (!legacyJobInstances.isEmpty()) {
+			// The legacy instances are merged into the first start + count instances
+			// of the index, which may not hold them.
+			List<Long> jobInstanceIds = RedisLegacyIndex.mergeIds(
+					opsJobInstanceIdSortedSet.reverseRange(getJobNameIndexKey(jobName), 0, (long) start + count - 1),
+					getJobInstanceIds(legacyJobInstances));
+			for (Long jobInstanceId : jobInstanceIds) {
+				result.add(new JobInstance(jobInstanceId, jobName));
+			}
+			return subset(result, start, count);
+		}
 
+		Set<String> jobInstanceIds = opsJobInstanceIdSortedSet.reverseRange(getJobNameIndexKey(jobName), start,
+				(long) start + count - 1);
+		if (jobInstanceIds != null) {
+			for (String jobInstanceId : jobInstanceIds) {
+				result.add(new JobInstance(Long.valueOf(jobInstanceId), jobName));
+			}
+		}
+		return result;
 	}
 
 	/**
@@ -242,21 +324,28 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 	@Override
 	public List<String> getJobNames() {
 
-		List<String> result = new ArrayList<>();
-		Set<String> setJobNames = opsJobInstanceString.range(AppConstants.JOB_INSTANCE_STRING_KEY, 0, -1);
-		if (!setJobNames.isEmpty()) {
-			for (String jobName : setJobNames) {
-				result.add(jobName);
-			}
+		Set<String> jobNames = new TreeSet<>();
+		Set<String> indexedJobNames = opsJobNameIndex.range(AppConstants.JOB_NAME_INDEX_KEY, 0, -1);
+		if (indexedJobNames != null) {
+			jobNames.addAll(indexedJobNames);
 		}
-		Collections.sort(result);
-		return result;
+		// Names of jobs that have only run before the name index existed.
+		Set<String> legacyJobNames = opsJobInstanceString.range(AppConstants.JOB_INSTANCE_STRING_KEY, 0, -1);
+		if (legacyJobNames != null) {
+			jobNames.addAll(legacyJobNames);
+		}
+		return new ArrayList<>(jobNames);
 	}
 
 	/**
 	 * Fetch the last job instances with the provided name, sorted backwards by
 	 * primary key, using a 'like' criteria
 	 * 
+	 * The pattern is only matched against the distinct job names: a prefix
+	 * pattern (e.g. import*) is answered by the name index with ZRANGEBYLEX, any
+	 * other pattern by one compiled matcher over the names. The instances are
+	 * then read from the per-name indexes of the matching names.
+	 * 
 	 * @param jobName {@link String} containing the name of the job.
 	 * @param start   int containing the offset of where list of job instances
 	 *                results should begin.
@@ -267,18 +356,42 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 	public List<JobInstance> findJobInstancesByName(String jobName, int start, int count) {
 
 		LOGGER.info("jobName :{}", jobName);
-		String convertedJobName = jobName.replaceAll(AppConstants.STAR_WILDCARD, AppConstants.STAR_WILDCARD_PATTERN);
 
 		List<JobInstance> result = new ArrayList<>();
-		JobInstance jobInstance = null;
-		Set<RedisJobInstance> redisJobInstances = opsJobInstanceSortedSet.range(AppConstants.JOB_INSTANCE_SET_KEY, 0,
-				-1);
-		if (!redisJobInstances.isEmpty()) {
-			for (RedisJobInstance redisJobInstance : redisJobInstances) {
-				if (redisJobInstance.getJobName().matches(convertedJobName)) {
-					jobInstance = new JobInstance(redisJobInstance.getJobInstanceId(), redisJobInstance.getJobName());
-					result.add(jobInstance);
+		if (count <= 0) {
+			return result;
+		}
+		List<RedisJobInstance> legacyJobInstances = redisLegacyIndex.indexJobInstances(jobName);
+		List<String> jobNames = findJobNames(jobName);
+		if (jobNames.isEmpty() && legacyJobInstances.isEmpty()) {
+			return result;
+		}
+
+		// Only the first start + count instances of each name can end up in the
+		// requested page.
+		long last = (long) start + count - 1;
+		List<Object> jobInstanceIds = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+			@Override
+			public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+				for (String name : jobNames) {
+					opsJobInstanceIdSortedSet.reverseRange(getJobNameIndexKey(name), 0, last);
 				}
+				return null;
+			}
+		});
+
+		Set<Long> found = new HashSet<>();
+		for (int i = 0; i < jobNames.size(); i++) {
+			@SuppressWarnings("unchecked")
+			Set<String> ids = (Set<String>) jobInstanceIds.get(i);
+			for (String jobInstanceId : ids) {
+				found.add(Long.valueOf(jobInstanceId));
+				result.add(new JobInstance(Long.valueOf(jobInstanceId), jobNames.get(i)));
+			}
+		}
+		for (RedisJobInstance legacyJobInstance : legacyJobInstances) {
+			if (found.add(legacyJobInstance.getJobInstanceId())) {
+				result.add(new JobInstance(legacyJobInstance.getJobInstanceId(), legacyJobInstance.getJobName()));
 			}
 		}
 
@@ -300,19 +413,14 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 	@Override
 	public int getJobInstanceCount(String jobName) throws NoSuchJobException {
 
-		List<JobInstance> result = new ArrayList<>();
-		JobInstance jobInstance = null;
-		Set<RedisJobInstance> redisJobInstances = opsJobInstanceSortedSet.range(AppConstants.JOB_INSTANCE_SET_KEY, 0,
-				-1);
-		if (!redisJobInstances.isEmpty()) {
-			for (RedisJobInstance redisJobInstance : redisJobInstances) {
-				if (redisJobInstance.getJobName().equals(jobName)) {
-					jobInstance = new JobInstance(redisJobInstance.getJobInstanceId(), redisJobInstance.getJobName());
-					result.add(jobInstance);
-				}
-			}
+		List<RedisJobInstance> legacyJobInstances = redisLegacyIndex.indexJobInstances(jobName);
+		if (!legacyJobInstances.isEmpty()) {
+			return RedisLegacyIndex.mergeIds(opsJobInstanceIdSortedSet.range(getJobNameIndexKey(jobName), 0, -1),
+					getJobInstanceIds(legacyJobInstances)).size();
 		}
-		return result.size();
+
+		Long count = opsJobInstanceIdSortedSet.zCard(getJobNameIndexKey(jobName));
+		return count == null ? 0 : count.intValue();
 	}
 
 	/**
@@ -326,32 +434,79 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 	@Override
 	@Nullable
 	public JobInstance getLastJobInstance(String jobName) {
-		JobInstance result = null;
 
-		Long maxId;
-		List<Long> jobInstanceIds;
+		Set<String> jobInstanceIds = opsJobInstanceIdSortedSet.reverseRange(getJobNameIndexKey(jobName), 0, 0);
+		if (jobInstanceIds != null && !jobInstanceIds.isEmpty()) {
+			return getJobInstance(new RedisJobInstance(Long.valueOf(jobInstanceIds.iterator().next()), jobName));
+		}
 
-		Set<RedisJobInstance> redisJobInstances = opsJobInstanceSortedSet.range(AppConstants.JOB_INSTANCE_SET_KEY, 0,
-				-1);
+		// Legacy ids are lower than the ids of the indexed instances, they only
+		// matter when the index has none.
+		List<Long> legacyJobInstanceIds = RedisLegacyIndex.mergeIds(null,
+				getJobInstanceIds(redisLegacyIndex.indexJobInstances(jobName)));
+		if (legacyJobInstanceIds.isEmpty()) {
+			return null;
+		}
+		return getJobInstance(new RedisJobInstance(legacyJobInstanceIds.get(0), jobName));
+	}
 
-		jobInstanceIds = redisJobInstances.stream().filter(ji -> jobName.equals(ji.getJobName()))
-				.map(RedisJobInstance::getJobInstanceId).collect(Collectors.toList());
+	/**
+	 * The job names matching the given pattern, where * stands for any sequence
+	 * of characters.
+	 */
+	private List<String> findJobNames(String jobName) {
 
-		if (!jobInstanceIds.isEmpty()) {
-			Collections.sort(jobInstanceIds, Collections.reverseOrder());
+		int wildcard = jobName.indexOf('*');
+		if (wildcard < 0) {
+			return Collections.singletonList(jobName);
+		}
 
-			maxId = jobInstanceIds.get(0);
+		if (wildcard == jobName.length() - 1) {
+			String prefix = jobName.substring(0, wildcard);
+			Range range = Range.unbounded();
+			if (!prefix.isEmpty()) {
+				range = Range.range().gte(prefix).lt(getLexUpperBound(prefix));
+			}
+			Set<String> jobNames = opsJobNameIndex.rangeByLex(AppConstants.JOB_NAME_INDEX_KEY, range);
+			return jobNames == null ? Collections.emptyList() : new ArrayList<>(jobNames);
+		}
 
-			for (RedisJobInstance rji : redisJobInstances) {
-				if (jobName.equals(rji.getJobName()) && maxId.equals(rji.getJobInstanceId())) {
-					result = getJobInstance(rji);
-					break;
-				}
+		Pattern pattern = getJobNamePattern(jobName);
+
+		List<String> result = new ArrayList<>();
+		for (String name : getJobNames()) {
+			if (pattern.matcher(name).matches()) {
+				result.add(name);
 			}
 		}
 		return result;
 	}
 
+	/**
+	 * The pattern of a job name where * stands for any sequence of characters.
+	 */
+	static Pattern getJobNamePattern(String jobName) {
+		String[] parts = jobName.split(AppConstants.STAR_WILDCARD, -1);
+		StringBuilder regex = new StringBuilder();
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0) {
+				regex.append(AppConstants.STAR_WILDCARD_PATTERN);
+			}
+			if (!parts[i].isEmpty()) {
+				regex.append(Pattern.quote(parts[i]));
+			}
+		}
+		return Pattern.compile(regex.toString());
+	}
+
+	/**
+	 * The smallest string greater than every string starting with the prefix.
+	 */
+	private String getLexUpperBound(String prefix) {
+		int last = prefix.length() - 1;
+		return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+	}
+
 	private void sortDescending(List<JobInstance> result) {
 		Collections.sort(result, new Comparator<JobInstance>() {
 			@Override
@@ -368,6 +523,14 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 		return jobInstances.subList(startIndex, endIndex);
 	}
 
+	private static List<Long> getJobInstanceIds(List<RedisJobInstance> redisJobInstances) {
+		List<Long> jobInstanceIds = new ArrayList<>();
+		for (RedisJobInstance redisJobInstance : redisJobInstances) {
+			jobInstanceIds.add(redisJobInstance.getJobInstanceId());
+		}
+		return jobInstanceIds;
+	}
+
 	private JobInstance getJobInstance(RedisJobInstance redisJobInstance) {
 		JobInstance jobInstance = new JobInstance(redisJobInstance.getJobInstanceId(), redisJobInstance.getJobName());
 		// should always be at version=0 because they never get updated
@@ -375,4 +538,12 @@ public class RedisJobInstanceDao implements JobInstanceDao {
 		return jobInstance;
 	}
 
+	static String getJobNameIndexKey(String jobName) {
+		return AppConstants.JOB_INSTANCE_BY_NAME_KEY_PREFIX + jobName;
+	}
+
+	static String getJobKeyField(String jobName, String jobKey) {
+		return jobName + "|" + jobKey;
+	}
+
 }
@@ -0,0 +1,705 @@
+package com.leo.app.dao;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobParameter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisZSetCommands.Tuple;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.leo.app.dao.model.JobExecutionParams;
+import com.leo.app.dao.model.RedisJobExecution;
+import com.leo.app.dao.model.RedisJobInstance;
+import com.leo.app.dao.model.RedisStepExecution;
+import com.leo.app.util.AppConstants;
+
+/**
+ * Index entries of the records written before the indexes existed.
+ *
+ * Earlier versions stored the job instances, job executions and step
+ * executions only in the legacy sorted sets, scored by id, so the indexes the
+ * DAOs read have no entries for them. {@link #backfill(int)} indexes them all,
+ * adds the legacy executions that have not ended to the running index, copies
+ * the legacy job parameters into parameter hashes and then sets the
+ * {@link AppConstants#LEGACY_INDEX_BACKFILL_KEY} marker. It
+ * runs once the application is ready, on the application task executor, and
+ * with the repository compaction; a lock keeps the nodes from running it at
+ * the same time. A repository without legacy job instances is marked at
+ * startup.
+ *
+ * Until the marker is set, the DAOs call this class where an index may miss
+ * legacy records. It scans the legacy set for the records of the job name,
+ * instance or execution looked up, writes their index entries and records the
+ * lookup in {@link AppConstants#LEGACY_INDEX_PROGRESS_KEY}, so each one is
+ * scanned for only once. The records found are returned as well, the DAOs
+ * merge them with what the index holds. Deleting the marker makes the DAOs
+ * look up the legacy sets again.
+ *
+ * Lookups of explorer reads routed to the read replica write nothing, the
+ * replica is read-only; they only return the records found.
+ *
+ * @author anoop
+ *
+ */
+@Component
+public class RedisLegacyIndex {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RedisLegacyIndex.class);
+
+	private static final Duration BACKFILL_LOCK_TIMEOUT = Duration.ofMinutes(1);
+
+	private static final String JOB_NAME_SCOPE = "job-name:";
+
+	private static final String JOB_INSTANCE_SCOPE = "job-instance:";
+
+	private static final String JOB_EXECUTION_SCOPE = "job-execution:";
+
+	private static final String JOB_INSTANCE_STEPS_SCOPE = "job-instance-steps:";
+
+	private static final RedisScript<String> SET_MAX_ID_SCRIPT = RedisScript
+			.of(new ClassPathResource("scripts/set-max-id.lua"), String.class);
+
+	@Resource(name = "stringRedisTemplate")
+	StringRedisTemplate stringRedisTemplate;
+
+	@Resource(name = "redisTemplate")
+	RedisTemplate<String, Object> redisTemplate;
+
+	@Resource(name = "applicationTaskExecutor")
+	TaskExecutor taskExecutor;
+
+	@Autowired
+	RedisEntityStore redisEntityStore;
+
+	@Value("${repository.legacy-index.backfill-on-startup:true}")
+	private boolean backfillOnStartup;
+
+	@Value("${repository.compaction.batch-size:500}")
+	private int batchSize;
+
+	@PostConstruct
+	public void init() {
+		if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(AppConstants.JOB_INSTANCE_SET_KEY))) {
+			markBackfilled();
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		if (backfillOnStartup) {
+			startBackfill();
+		}
+	}
+
+	/**
+	 * Run {@link #backfill(int)} on the application task executor, unless the
+	 * legacy records are indexed already.
+	 */
+	public void startBackfill() {
+		if (!isPending()) {
+			return;
+		}
+		taskExecutor.execute(() -> {
+			try {
+				backfill(batchSize);
+			} catch (RuntimeException e) {
+				LOGGER.error("Could not index the legacy records", e);
+			}
+		});
+	}
+
+	/**
+	 * @return whether legacy records may still miss index entries
+	 */
+	public boolean isPending() {
+		return !Boolean.TRUE.equals(stringRedisTemplate.hasKey(AppConstants.LEGACY_INDEX_BACKFILL_KEY));
+	}
+
+	/**
+	 * Index the legacy job instances of the jobs with the given name, unless the
+	 * name has been looked up before.
+	 *
+	 * @param jobName a job name where * stands for any sequence of characters
+	 * @return the legacy job instances of the jobs found by this call
+	 */
+	public List<RedisJobInstance> indexJobInstances(String jobName) {
+		String scope = JOB_NAME_SCOPE + jobName;
+		if (isIndexed(scope)) {
+			return Collections.emptyList();
+		}
+
+		Pattern pattern = RedisJobInstanceDao.getJobNamePattern(jobName);
+		List<RedisJobInstance> result = new ArrayList<>();
+		scanLegacyRecords(AppConstants.JOB_INSTANCE_SET_KEY, batchSize, records -> {
+			for (RedisJobInstance redisJobInstance : cast(records, RedisJobInstance.class)) {
+				if (pattern.matcher(redisJobInstance.getJobName()).matches()) {
+					result.add(redisJobInstance);
+				}
+			}
+		});
+		writeJobInstanceEntries(result);
+		recordIndexed(scope);
+		return result;
+	}
+
+	/**
+	 * Index the legacy job executions of the given job instances, unless the
+	 * instances have been looked up before. Only the instances found in the
+	 * legacy instance set can have legacy executions, the legacy execution set is
+	 * scanned once for all of them.
+	 *
+	 * @param jobInstanceIds the job instance ids
+	 * @return the legacy job executions of the instances found by this call
+	 */
+	public List<RedisJobExecution> indexJobExecutions(Collection<Long> jobInstanceIds) {
+		if (jobInstanceIds.isEmpty() || !isPending()) {
+			return Collections.emptyList();
+		}
+
+		List<Long> ids = new ArrayList<>(jobInstanceIds);
+		List<Object> lookups = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+			@Override
+			public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+				for (Long jobInstanceId : ids) {
+					stringRedisTemplate.opsForSet().isMember(AppConstants.LEGACY_INDEX_PROGRESS_KEY,
+							JOB_INSTANCE_SCOPE + jobInstanceId);
+					stringRedisTemplate.opsForZSet().count(AppConstants.JOB_INSTANCE_SET_KEY, jobInstanceId,
+							jobInstanceId);
+				}
+				return null;
+			}
+		});
+		List<String> scopes = new ArrayList<>();
+		Set<Long> legacyJobInstanceIds = new HashSet<>();
+		for (int i = 0; i < ids.size(); i++) {
+			if (!Boolean.TRUE.equals(lookups.get(2 * i))) {
+				scopes.add(JOB_INSTANCE_SCOPE + ids.get(i));
+				if (((Long) lookups.get(2 * i + 1)) > 0) {
+					legacyJobInstanceIds.add(ids.get(i));
+				}
+			}
+		}
+
+		List<RedisJobExecution> result = new ArrayList<>();
+		if (!legacyJobInstanceIds.isEmpty()) {
+			scanLegacyRecords(AppConstants.JOB_EXECUTION_SET_KEY, batchSize, records -> {
+				for (RedisJobExecution redisJobExecution : cast(records, RedisJobExecution.class)) {
+					if (legacyJobInstanceIds.contains(redisJobExecution.getJobInstanceId())) {
+						result.add(redisJobExecution);
+					}
+				}
+			});
+			writeJobExecutionEntries(result);
+		}
+		// Instances created by this version are recorded as well, so they are not
+		// looked up in the legacy instance set again.
+		recordIndexed(scopes);
+		return result;
+	}
+
+	/**
+	 * Index the legacy step executions of the given job execution, unless the
+	 * execution has been looked up before.
+	 *
+	 * @param jobExecutionId the job execution id
+	 * @return the legacy step executions of the job execution found by this call
+	 */
+	public List<RedisStepExecution> indexStepExecutions(Long jobExecutionId) {
+		String scope = JOB_EXECUTION_SCOPE + jobExecutionId;
+		if (isIndexed(scope)) {
+			return Collections.emptyList();
+		}
+
+		List<RedisStepExecution> result = new ArrayList<>();
+		if (isLegacy(AppConstants.JOB_EXECUTION_SET_KEY, jobExecutionId)) {
+			scanLegacyRecords(AppConstants.STEP_EXECUTION_SET_KEY, batchSize, records -> {
+				for (RedisStepExecution redisStepExecution : cast(records, RedisStepExecution.class)) {
+					if (jobExecutionId.equals(redisStepExecution.getJobExecutionId())) {
+						result.add(redisStepExecution);
+					}
+				}
+			});
+			writeStepExecutionEntries(result);
+		}
+		recordIndexed(scope);
+		return result;
+	}
+
+	/**
+	 * Index the job instance of a legacy job execution.
+	 *
+	 * @param jobExecutionId the job execution id
+	 * @return the job instance id, or {@code null} if the job execution is not in
+	 *         the legacy execution set
+	 */
+	@Nullable
+	public Long findJobInstanceId(Long jobExecutionId) {
+		if (!isPending()) {
+			return null;
+		}
+
+		List<Object> records = getLegacyRecords(AppConstants.JOB_EXECUTION_SET_KEY, jobExecutionId);
+		if (records.isEmpty()) {
+			return null;
+		}
+		RedisJobExecution redisJobExecution = (RedisJobExecution) records.get(0);
+		writeJobExecutionEntries(Collections.singletonList(redisJobExecution));
+		return redisJobExecution.getJobInstanceId();
+	}
+
+	/**
+	 * Point the (job instance, step name) pairs of a legacy job instance at the
+	 * last legacy step execution of each step, unless they point at a later one.
+	 * The legacy step set is scanned once for all steps of the instance, which is
+	 * not looked up again.
+	 *
+	 * @param jobInstanceId the job instance id
+	 * @param stepName      the step name
+	 * @return the id the pair of the given step points at, or {@code null} if
+	 *         none
+	 */
+	@Nullable
+	public Long findLastStepExecutionId(Long jobInstanceId, String stepName) {
+		String scope = JOB_INSTANCE_STEPS_SCOPE + jobInstanceId;
+		if (isIndexed(scope)) {
+			return null;
+		}
+
+		Long lastStepExecutionId = null;
+		List<String> scopes = new ArrayList<>();
+		if (isLegacy(AppConstants.JOB_INSTANCE_SET_KEY, jobInstanceId)) {
+			List<Long> legacyJobExecutionIds = new ArrayList<>();
+			for (RedisJobExecution redisJobExecution : indexJobExecutions(Collections.singletonList(jobInstanceId))) {
+				legacyJobExecutionIds.add(redisJobExecution.getJobExecutionId());
+			}
+			Set<Long> jobExecutionIds = new HashSet<>(mergeIds(stringRedisTemplate.opsForZSet()
+					.range(RedisJobExecutionDao.getJobInstanceIndexKey(jobInstanceId), 0, -1), legacyJobExecutionIds));
+
+			List<RedisStepExecution> result = new ArrayList<>();
+			if (!jobExecutionIds.isEmpty()) {
+				scanLegacyRecords(AppConstants.STEP_EXECUTION_SET_KEY, batchSize, records -> {
+					for (RedisStepExecution redisStepExecution : cast(records, RedisStepExecution.class)) {
+						if (jobExecutionIds.contains(redisStepExecution.getJobExecutionId())) {
+							result.add(redisStepExecution);
+						}
+					}
+				});
+			}
+			writeStepExecutionEntries(result);
+
+			Map<String, Long> lastStepExecutionIds = new HashMap<>();
+			for (RedisStepExecution redisStepExecution : result) {
+				lastStepExecutionIds.merge(redisStepExecution.getStepName(), redisStepExecution.getStepExecutionId(),
+						Math::max);
+			}
+			for (Map.Entry<String, Long> entry : lastStepExecutionIds.entrySet()) {
+				Long pointedAt = entry.getValue();
+				if (!ReplicaReadRouter.isReplicaRead()) {
+					pointedAt = Long.valueOf(setLastStepExecutionId(
+							RedisStepExecutionDao.getLastStepExecutionField(jobInstanceId, entry.getKey()), pointedAt));
+				}
+				if (stepName.equals(entry.getKey())) {
+					lastStepExecutionId = pointedAt;
+				}
+			}
+			for (Long jobExecutionId : jobExecutionIds) {
+				scopes.add(JOB_EXECUTION_SCOPE + jobExecutionId);
+			}
+		}
+		scopes.add(scope);
+		recordIndexed(scopes);
+		return lastStepExecutionId;
+	}
+
+	/**
+	 * Index every record of the legacy sets and copy the legacy job parameters,
+	 * then set the marker so the DAOs no longer look up the legacy sets. Legacy records written by a node of a
+	 * previous version after this run are not indexed, the backfill should run
+	 * once no such node remains.
+	 *
+	 * Nothing is indexed while another node holds the backfill lock.
+	 *
+	 * @param batchSize the number of members scanned and indexed at a time
+	 * @return the number of legacy members indexed
+	 */
+	public long backfill(int batchSize) {
+		String lockToken = UUID.randomUUID().toString();
+		if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+				.setIfAbsent(AppConstants.LEGACY_INDEX_BACKFILL_LOCK_KEY, lockToken, BACKFILL_LOCK_TIMEOUT))) {
+			LOGGER.info("Legacy records are being indexed by another node");
+			return 0;
+		}
+
+		try {
+			long indexed = 0;
+			indexed += backfill(AppConstants.JOB_INSTANCE_SET_KEY, batchSize,
+					records -> writeJobInstanceEntries(cast(records, RedisJobInstance.class)));
+			Set<String> unfinishedJobExecutionIds = new HashSet<>();
+			indexed += backfill(AppConstants.JOB_EXECUTION_SET_KEY, batchSize, records -> {
+				List<RedisJobExecution> redisJobExecutions = cast(records, RedisJobExecution.class);
+				writeJobExecutionEntries(redisJobExecutions);
+				for (RedisJobExecution redisJobExecution : redisJobExecutions) {
+					if (redisJobExecution.getStartTime() != null && redisJobExecution.getEndTime() == null) {
+						unfinishedJobExecutionIds.add(String.valueOf(redisJobExecution.getJobExecutionId()));
+					}
+				}
+			});
+			writeRunningEntries(unfinishedJobExecutionIds);
+			indexed += backfill(AppConstants.JOB_EXECUTION_PARAMS_SET_KEY, batchSize,
+					records -> writeJobParameters(cast(records, JobExecutionParams.class)));
+			indexed += backfill(AppConstants.STEP_EXECUTION_SET_KEY, batchSize, records -> {
+				List<RedisStepExecution> redisStepExecutions = cast(records, RedisStepExecution.class);
+				writeStepExecutionEntries(redisStepExecutions);
+				writeLastStepExecutionIds(redisStepExecutions);
+			});
+			markBackfilled();
+			return indexed;
+		} finally {
+			if (lockToken.equals(stringRedisTemplate.opsForValue().get(AppConstants.LEGACY_INDEX_BACKFILL_LOCK_KEY))) {
+				stringRedisTemplate.delete(AppConstants.LEGACY_INDEX_BACKFILL_LOCK_KEY);
+			}
+		}
+	}
+
+	/**
+	 * Indexes the records of one legacy set, extending the lock after every
+	 * batch.
+	 */
+	private long backfill(String legacySetKey, int batchSize, Consumer<List<Object>> consumer) {
+		long indexed = scanLegacyRecords(legacySetKey, batchSize, records -> {
+			consumer.accept(records);
+			stringRedisTemplate.expire(AppConstants.LEGACY_INDEX_BACKFILL_LOCK_KEY, BACKFILL_LOCK_TIMEOUT.toMillis(),
+					TimeUnit.MILLISECONDS);
+		});
+		LOGGER.info("Indexed {} members of {}", indexed, legacySetKey);
+		return indexed;
+	}
+
+	private void markBackfilled() {
+		stringRedisTemplate.opsForValue().set(AppConstants.LEGACY_INDEX_BACKFILL_KEY,
+				String.valueOf(System.currentTimeMillis()));
+		stringRedisTemplate.delete(AppConstants.LEGACY_INDEX_PROGRESS_KEY);
+		LOGGER.info("Legacy records are indexed");
+	}
+
+	/**
+	 * @return whether the legacy records of the scope are indexed, either by the
+	 *         backfill or by an earlier lookup
+	 */
+	private boolean isIndexed(String scope) {
+		return !isPending() || Boolean.TRUE
+				.equals(stringRedisTemplate.opsForSet().isMember(AppConstants.LEGACY_INDEX_PROGRESS_KEY, scope));
+	}
+
+	private void recordIndexed(String scope) {
+		recordIndexed(Collections.singletonList(scope));
+	}
+
+	private void recordIndexed(List<String> scopes) {
+		if (!scopes.isEmpty() && !ReplicaReadRouter.isReplicaRead()) {
+			stringRedisTemplate.opsForSet().add(AppConstants.LEGACY_INDEX_PROGRESS_KEY, scopes.toArray(new String[0]));
+		}
+	}
+
+	/**
+	 * Writes the name index entries and the job key entries of the given job
+	 * instances in one pipeline. Job key entries are only added, an instance
+	 * created since for the same key is kept.
+	 */
+	private void writeJobInstanceEntries(List<RedisJobInstance> redisJobInstances) {
+		if (redisJobInstances.isEmpty() || ReplicaReadRouter.isReplicaRead()) {
+			return;
+		}
+		stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+			@Override
+			public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+				for (RedisJobInstance redisJobInstance : redisJobInstances) {
+					String jobName = redisJobInstance.getJobName();
+					String jobInstanceId = String.valueOf(redisJobInstance.getJobInstanceId());
+					stringRedisTemplate.opsForZSet().add(AppConstants.JOB_NAME_INDEX_KEY, jobName, 0);
+					stringRedisTemplate.opsForZSet().add(RedisJobInstanceDao.getJobNameIndexKey(jobName),
+							jobInstanceId, redisJobInstance.getJobInstanceId());
+					if (redisJobInstance.getJobKey() != null) {
+						stringRedisTemplate.opsForHash().putIfAbsent(AppConstants.JOB_INSTANCE_JOB_KEY_HASH_KEY,
+								RedisJobInstanceDao.getJobKeyField(jobName, redisJobInstance.getJobKey()),
+								jobInstanceId);
+					}
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Writes the per-instance index entries and the instance entries of the
+	 * given job executions in one pipeline.
+	 */
+	private void writeJobExecutionEntries(List<RedisJobExecution> redisJobExecutions) {
+		if (redisJobExecutions.isEmpty() || ReplicaReadRouter.isReplicaRead()) {
+			return;
+		}
+		stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+			@Override
+			public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+				for (RedisJobExecution redisJobExecution : redisJobExecutions) {
+					String jobExecutionId = String.valueOf(redisJobExecution.getJobExecutionId());
+					stringRedisTemplate.opsForZSet().add(
+							RedisJobExecutionDao.getJobInstanceIndexKey(redisJobExecution.getJobInstanceId()),
+							jobExecutionId, redisJobExecution.getJobExecutionId());
+					stringRedisTemplate.opsForHash().putIfAbsent(AppConstants.JOB_EXECUTION_INSTANCE_HASH_KEY,
+							jobExecutionId, String.valueOf(redisJobExecution.getJobInstanceId()));
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Adds the given legacy job executions to the running index of their job, if
+	 * their latest version has started and not ended. A scanned legacy record may
+	 * be an older version of its execution, so the latest versions are read
+	 * again.
+	 */
+	private void writeRunningEntries(Set<String> jobExecutionIds) {
+		if (jobExecutionIds.isEmpty() || ReplicaReadRouter.isReplicaRead()) {
+			return;
+		}
+		List<RedisJobExecution> running = new ArrayList<>();
+		Set<String> jobInstanceIds = new HashSet<>();
+		for (RedisJobExecution redisJobExecution : redisEntityStore.<RedisJobExecution>multiGet(
+				AppConstants.JOB_EXECUTION_HASH_KEY, AppConstants.JOB_EXECUTION_SET_KEY, jobExecutionIds,
+				RedisJobExecution::getVersion)) {
+			if (redisJobExecution.getStartTime() != null && redisJobExecution.getEndTime() == null) {
+				running.add(redisJobExecution);
+				jobInstanceIds.add(String.valueOf(redisJobExecution.getJobInstanceId()));
+			}
+		}
+		Map<Long, String> jobNames = new HashMap<>();
+		for (RedisJobInstance redisJobInstance : redisEntityStore.<RedisJobInstance>multiGet(
+				AppConstants.JOB_INSTANCE_HASH_KEY, AppConstants.JOB_INSTANCE_SET_KEY, jobInstanceIds,
+				RedisJobInstance::getVersion)) {
+			jobNames.put(redisJobInstance.getJobInstanceId(), redisJobInstance.getJobName());
+		}
+
+		stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+			@Override
+			public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+				for (RedisJobExecution redisJobExecution : running) {
+					String jobName = jobNames.get(redisJobExecution.getJobInstanceId());
+					if (jobName != null) {
+						stringRedisTemplate.opsForZSet().add(RedisJobExecutionDao.getRunningIndexKey(jobName),
+								String.valueOf(redisJobExecution.getJobExecutionId()),
+								redisJobExecution.getJobExecutionId());
+					}
+				}
+				return null;
+			}
+		});
+		LOGGER.info("Indexed {} running legacy job executions", running.size());
+	}
+
+	/**
+	 * Adds the given legacy parameters to the parameter hashes of their
+	 * executions in one pipeline. The parameters of an execution may come in
+	 * more than one batch, each adds its fields.
+	 */
+	private void writeJobParameters(List<JobExecutionParams> jobExecutionParams) {
+		if (jobExecutionParams.isEmpty() || ReplicaReadRouter.isReplicaRead()) {
+			return;
+		}
+		Map<Long, Map<String, JobParameter>> parametersByExecution = new HashMap<>();
+		for (JobExecutionParams parameter : jobExecutionParams) {
+			parametersByExecution.computeIfAbsent(parameter.getJobExecutionId(), id -> new HashMap<>())
+					.put(parameter.getKeyName(), RedisJobExecutionDao.toJobParameter(parameter));
+		}
+		stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+			@Override
+			public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+				for (Map.Entry<Long, Map<String, JobParameter>> parameters : parametersByExecution.entrySet()) {
+					stringRedisTemplate.opsForHash().putAll(
+							RedisJobExecutionDao.getJobParametersKey(parameters.getKey()),
+							RedisJobExecutionDao.encodeJobParameters(parameters.getValue()));
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Writes the per-execution index entries of the given step executions in one
+	 * pipeline.
+	 */
+	private void writeStepExecutionEntries(List<RedisStepExecution> redisStepExecutions) {
+		if (redisStepExecutions.isEmpty() || ReplicaReadRouter.isReplicaRead()) {
+			return;
+		}
+		stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+			@Override
+			public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+				for (RedisStepExecution redisStepExecution : redisStepExecutions) {
+					stringRedisTemplate.opsForZSet().add(
+							RedisStepExecutionDao.getJobExecutionIndexKey(redisStepExecution.getJobExecutionId()),
+							String.valueOf(redisStepExecution.getStepExecutionId()),
+							redisStepExecution.getStepExecutionId());
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Points the (job instance, step name) pairs of the given step executions at
+	 * the last of them, unless they point at a later one. The job instances are
+	 * read in one HMGET, then each pair is written once, Jedis does not run
+	 * scripts in a pipeline.
+	 */
+	private void writeLastStepExecutionIds(List<RedisStepExecution> redisStepExecutions) {
+		if (redisStepExecutions.isEmpty()) {
+			return;
+		}
+		List<String> jobExecutionIds = new ArrayList<>();
+		for (RedisStepExecution redisStepExecution : redisStepExecutions) {
+			jobExecutionIds.add(String.valueOf(redisStepExecution.getJobExecutionId()));
+		}
+		List<String> jobInstanceIds = stringRedisTemplate.<String, String>opsForHash()
+				.multiGet(AppConstants.JOB_EXECUTION_INSTANCE_HASH_KEY, jobExecutionIds);
+
+		Map<String, Long> lastStepExecutionIds = new HashMap<>();
+		for (int i = 0; i < redisStepExecutions.size(); i++) {
+			// Step executions of job executions that no longer exist are skipped.
+			if (jobInstanceIds.get(i) != null) {
+				RedisStepExecution redisStepExecution = redisStepExecutions.get(i);
+				lastStepExecutionIds.merge(
+						RedisStepExecutionDao.getLastStepExecutionField(Long.valueOf(jobInstanceIds.get(i)),
+								redisStepExecution.getStepName()),
+						redisStepExecution.getStepExecutionId(), Math::max);
+			}
+		}
+		for (Map.Entry<String, Long> lastStepExecutionId : lastStepExecutionIds.entrySet()) {
+			setLastStepExecutionId(lastStepExecutionId.getKey(), lastStepExecutionId.getValue());
+		}
+	}
+
+	private String setLastStepExecutionId(String field, Long stepExecutionId) {
+		return stringRedisTemplate.execute(SET_MAX_ID_SCRIPT,
+				Collections.singletonList(AppConstants.LAST_STEP_EXECUTION_HASH_KEY), field,
+				String.valueOf(stepExecutionId));
+	}
+
+	private boolean isLegacy(String legacySetKey, Long id) {
+		Long count = stringRedisTemplate.opsForZSet().count(legacySetKey, id, id);
+		return count != null && count > 0;
+	}
+
+	/**
+	 * Walks a legacy set with ZSCAN and hands its records to the consumer in
+	 * batches. A record updated in place may be stored in several versions,
+	 * which all carry the same index data. The consumer runs on other connections, the scan cursor keeps this
+	 * one.
+	 *
+	 * @return the number of members scanned
+	 */
+	private long scanLegacyRecords(String legacySetKey, int batchSize, Consumer<List<Object>> consumer) {
+		byte[] rawKey = redisTemplate.getStringSerializer().serialize(legacySetKey);
+		Long scanned = redisTemplate.execute((RedisCallback<Long>) connection -> {
+			long count = 0;
+			List<Object> batch = new ArrayList<>();
+			try (Cursor<Tuple> cursor = connection.zScan(rawKey, ScanOptions.scanOptions().count(batchSize).build())) {
+				while (cursor.hasNext()) {
+					count++;
+					batch.add(redisTemplate.getValueSerializer().deserialize(cursor.next().getValue()));
+					if (batch.size() >= batchSize) {
+						consumer.accept(batch);
+						batch = new ArrayList<>();
+					}
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not close the scan cursor of " + legacySetKey, e);
+			}
+			if (!batch.isEmpty()) {
+				consumer.accept(batch);
+			}
+			return count;
+		});
+		return scanned == null ? 0 : scanned;
+	}
+
+	/**
+	 * Merges the ids read from an index with the ids of the legacy records found
+	 * for it, which the index may not hold.
+	 *
+	 * @return the distinct ids, highest first
+	 */
+	static List<Long> mergeIds(@Nullable Collection<String> indexedIds, Collection<Long> legacyIds) {
+		Set<Long> ids = new TreeSet<>(Collections.reverseOrder());
+		if (indexedIds != null) {
+			for (String id : indexedIds) {
+				ids.add(Long.valueOf(id));
+			}
+		}
+		ids.addAll(legacyIds);
+		return new ArrayList<>(ids);
+	}
+
+	private static <T> List<T> cast(List<Object> records, Class<T> type) {
+		List<T> result = new ArrayList<>();
+		for (Object record : records) {
+			result.add(type.cast(record));
+		}
+		return result;
+	}
+
+	/**
+	 * The records of a legacy set stored under the given id.
+	 */
+	private List<Object> getLegacyRecords(String legacySetKey, Long id) {
+		byte[] rawKey = redisTemplate.getStringSerializer().serialize(legacySetKey);
+		return deserialize(redisTemplate
+				.execute((RedisCallback<Set<byte[]>>) connection -> connection.zRangeByScore(rawKey, id, id)));
+	}
+
+	private List<Object> deserialize(@Nullable Set<byte[]> members) {
+		List<Object> result = new ArrayList<>();
+		if (members != null) {
+			for (byte[] member : members) {
+				result.add(redisTemplate.getValueSerializer().deserialize(member));
+			}
+		}
+		return result;
+	}
+
+}
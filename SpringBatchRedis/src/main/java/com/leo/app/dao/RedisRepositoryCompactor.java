@@ -0,0 +1,211 @@
+package com.leo.app.dao;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import javax.annotation.Resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisZSetCommands.Tuple;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+
+import com.leo.app.dao.model.RedisJobExecution;
+import com.leo.app.dao.model.RedisStepExecution;
+import com.leo.app.util.AppConstants;
+
+/**
+ * Removes superseded members from the legacy sorted sets, where every update of
+ * an execution added a new member under the same score.
+ *
+ * The first run also backfills the indexes with the legacy records, see
+ * {@link RedisLegacyIndex#backfill(int)}.
+ *
+ * The sets are walked with ZSCAN and handled in batches of scores. For the
+ * execution sets only the member with the highest version is kept for each
+ * score. Context members carry no version, so they are only removed once the
+ * context has been rewritten to its own context hash.
+ *
+ * Members are removed by their exact bytes and a member is only removed if a
+ * newer one exists, so it is safe to run while jobs are writing.
+ *
+ * @author anoop
+ *
+ */
+@Component
+public class RedisRepositoryCompactor {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RedisRepositoryCompactor.class);
+
+	@Value("${repository.compaction.batch-size:500}")
+	private int batchSize;
+
+	@Resource(name = "redisTemplate")
+	RedisTemplate<String, Object> redisTemplate;
+
+	@Autowired
+	RedisLegacyIndex redisLegacyIndex;
+
+	/**
+	 * Index the legacy records if not done yet, then compact all legacy sorted
+	 * sets.
+	 *
+	 * @return the number of members indexed and removed and the bytes reclaimed
+	 */
+	public CompactionResult compact() {
+		CompactionResult result = new CompactionResult();
+		if (redisLegacyIndex.isPending()) {
+			result.indexedMembers = redisLegacyIndex.backfill(batchSize);
+		}
+		compact(AppConstants.JOB_EXECUTION_SET_KEY, member -> ((RedisJobExecution) member).getVersion(), result, null);
+		compact(AppConstants.STEP_EXECUTION_SET_KEY, member -> ((RedisStepExecution) member).getVersion(), result,
+				null);
+		compact(AppConstants.JOB_EXECUTION_CONTEXT, null, result, AppConstants.JOB_EXECUTION_CONTEXT_KEY_PREFIX);
+		compact(AppConstants.STEP_EXECUTION_CONTEXT, null, result, AppConstants.STEP_EXECUTION_CONTEXT_KEY_PREFIX);
+		return result;
+	}
+
+	/**
+	 * @param contextKeyPrefix the prefix of the hash of a single context, only for
+	 *                         the context sets
+	 */
+	private void compact(String setKey, Function<Object, Integer> version, CompactionResult result,
+			String contextKeyPrefix) {
+		byte[] rawKey = redisTemplate.getStringSerializer().serialize(setKey);
+		long removedBefore = result.getRemovedMembers();
+		long bytesBefore = result.getReclaimedBytes();
+
+		redisTemplate.execute((RedisCallback<Object>) connection -> {
+			Set<Double> scores = new LinkedHashSet<>();
+			try (Cursor<Tuple> cursor = connection.zScan(rawKey, ScanOptions.scanOptions().count(batchSize).build())) {
+				while (cursor.hasNext()) {
+					result.scannedMembers++;
+					scores.add(cursor.next().getScore());
+					if (scores.size() >= batchSize) {
+						compactScores(rawKey, contextKeyPrefix, scores, version, result);
+						scores.clear();
+					}
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not close the scan cursor of " + setKey, e);
+			}
+			if (!scores.isEmpty()) {
+				compactScores(rawKey, contextKeyPrefix, scores, version, result);
+			}
+			return null;
+		});
+
+		LOGGER.info("Compacted {}: removed {} members, reclaimed {} bytes", setKey,
+				result.getRemovedMembers() - removedBefore, result.getReclaimedBytes() - bytesBefore);
+	}
+
+	/**
+	 * Reads every member stored under the given scores in one pipeline and
+	 * removes the superseded ones in a second pipeline. This runs on its own
+	 * connection, the scan cursor keeps the other one.
+	 */
+	@SuppressWarnings("unchecked")
+	private void compactScores(byte[] rawKey, String contextKeyPrefix, Set<Double> scores,
+			Function<Object, Integer> version, CompactionResult result) {
+		List<Double> batch = new ArrayList<>(scores);
+
+		List<Object> records = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+			for (Double score : batch) {
+				connection.zRangeByScore(rawKey, score, score);
+				if (version == null) {
+					connection.exists(
+							redisTemplate.getStringSerializer().serialize(contextKeyPrefix + score.longValue()));
+				}
+			}
+			return null;
+		}, null);
+
+		List<byte[]> superseded = new ArrayList<>();
+		int index = 0;
+		for (int i = 0; i < batch.size(); i++) {
+			Set<byte[]> members = (Set<byte[]>) records.get(index++);
+			if (version == null) {
+				if (Boolean.TRUE.equals(records.get(index++))) {
+					superseded.addAll(members);
+				}
+			} else if (members.size() > 1) {
+				byte[] latest = null;
+				int latestVersion = Integer.MIN_VALUE;
+				for (byte[] member : members) {
+					Integer memberVersion = version.apply(redisTemplate.getValueSerializer().deserialize(member));
+					int current = memberVersion == null ? -1 : memberVersion;
+					if (latest == null || current > latestVersion) {
+						if (latest != null) {
+							superseded.add(latest);
+						}
+						latest = member;
+						latestVersion = current;
+					} else {
+						superseded.add(member);
+					}
+				}
+			}
+		}
+
+		if (!superseded.isEmpty()) {
+			redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+				for (byte[] member : superseded) {
+					connection.zRem(rawKey, member);
+				}
+				return null;
+			}, null);
+			for (byte[] member : superseded) {
+				result.removedMembers++;
+				result.reclaimedBytes += member.length;
+			}
+		}
+	}
+
+	/**
+	 * Outcome of a compaction run.
+	 */
+	public static class CompactionResult {
+
+		private long indexedMembers;
+
+		private long scannedMembers;
+
+		private long removedMembers;
+
+		private long reclaimedBytes;
+
+		public long getIndexedMembers() {
+			return indexedMembers;
+		}
+
+		public long getScannedMembers() {
+			return scannedMembers;
+		}
+
+		public long getRemovedMembers() {
+			return removedMembers;
+		}
+
+		public long getReclaimedBytes() {
+			return reclaimedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return "CompactionResult [indexedMembers=" + indexedMembers + ", scannedMembers=" + scannedMembers
+					+ ", removedMembers=" + removedMembers + ", reclaimedBytes=" + reclaimedBytes + "]";
+		}
+
+	}
+
+}
@@ -1,11 +1,13 @@
 package com.leo.app.dao;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Resource;
 
@@ -17,8 +19,16 @@ import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobInstance;
 import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.core.repository.dao.StepExecutionDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
@@ -29,6 +39,23 @@ import com.leo.app.util.AppConstants;
 /**
  * The StepExecutionDao Redis implementation.
  * 
+ * With {@code repository.step-execution.write-behind.enabled} the updates a
+ * running step makes at its chunk commits are held back and written together,
+ * after {@code repository.step-execution.write-behind.max-updates} updates or
+ * {@code repository.step-execution.write-behind.interval-ms}, whichever comes
+ * first. Status changes and the end of the step are always written at once.
+ * Held back updates are written by the next update of the step once one of
+ * the limits is reached, on the step thread, so the stored state of a step
+ * whose chunks take longer than the interval lags one chunk behind. The
+ * interval is only checked on the next update, there is no timer: held back
+ * updates stay unwritten until the step updates again or ends, however long
+ * that takes. The held back state of a step is dropped when an update fails,
+ * and once it is older than the interval.
+ * 
+ * The per-execution indexes miss the step executions written before they
+ * existed, which {@link RedisLegacyIndex} adds on the first read of the job
+ * execution.
+ * 
  * @author anoop
  *
  */
@@ -38,11 +65,49 @@ public class RedisStepExecutionDao implements StepExecutionDao {
 
 	private int exitMessageLength = AppConstants.DEFAULT_MAX_VARCHAR_LENGTH;
 
+	@Value("${repository.step-execution.batch-size:500}")
+	private int batchSize;
+
+	@Value("${repository.step-execution.write-behind.enabled:false}")
+	private boolean writeBehind;
+
+	@Value("${repository.step-execution.write-behind.interval-ms:1000}")
+	private long writeBehindInterval;
+
+	@Value("${repository.step-execution.write-behind.max-updates:10}")
+	private int writeBehindMaxUpdates;
+
+	private final Map<Long, DeferredUpdate> deferredUpdates = new ConcurrentHashMap<>();
+
 	@Resource(name = "redisTemplate")
-	ZSetOperations<String, RedisStepExecution> opsStepExecutionSortedSet;
+	HashOperations<String, String, RedisStepExecution> opsStepExecutionHash;
+
+	@Resource(name = "stringRedisTemplate")
+	ZSetOperations<String, String> opsStepExecutionIdSortedSet;
+
+	@Resource(name = "stringRedisTemplate")
+	HashOperations<String, String, String> opsLastStepExecutionHash;
+
+	@Resource(name = "stringRedisTemplate")
+	HashOperations<String, String, String> opsVersionHash;
 
 	@Resource(name = "redisTemplate")
-	ZSetOperations<String, RedisJobExecution> opsJobExecutionSortedSet;
+	RedisTemplate<String, Object> redisTemplate;
+
+	@Resource(name = "stepExecutionIncrementer")
+	DataFieldMaxValueIncrementer stepExecutionIncrementer;
+
+	@Autowired
+	RedisEntityStore redisEntityStore;
+
+	@Autowired
+	RedisExecutionCache redisExecutionCache;
+
+	@Autowired
+	ReplicaReadRouter replicaReadRouter;
+
+	@Autowired
+	RedisLegacyIndex redisLegacyIndex;
 
 	/**
 	 * Save the given StepExecution.
@@ -56,21 +121,20 @@ public class RedisStepExecutionDao implements StepExecutionDao {
 	@Override
 	public void saveStepExecution(StepExecution stepExecution) {
 
-		Assert.isNull(stepExecution.getId(),
-				"to-be-saved (not updated) StepExecution can't already have an id assigned");
-		Assert.isNull(stepExecution.getVersion(),
-				"to-be-saved (not updated) StepExecution can't already have a version assigned");
-		validateStepExecution(stepExecution);
+		RedisStepExecution redisStepExecution = prepareStepExecution(stepExecution);
 
-		stepExecution.setId(System.currentTimeMillis());
-		stepExecution.incrementVersion(); // Should be 0
+		redisTemplate.execute(new SessionCallback<List<Object>>() {
+			@Override
+			public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+				// The operations below run on the connection bound by this session, so
+				// the record and its index entry are written in one MULTI/EXEC.
+				operations.multi();
 
-		String exitDescription = truncateExitDescription(stepExecution.getExitStatus().getExitDescription());
-		RedisStepExecution redisStepExecution = new RedisStepExecution(stepExecution);
-		redisStepExecution.setExistMessage(exitDescription);
-		opsStepExecutionSortedSet.add(AppConstants.STEP_EXECUTION_SET_KEY, redisStepExecution,
-				redisStepExecution.getStepExecutionId());
+				writeStepExecution(stepExecution, redisStepExecution);
 
+				return operations.exec();
+			}
+		});
 	}
 
 	/**
@@ -80,6 +144,11 @@ public class RedisStepExecutionDao implements StepExecutionDao {
 	 * 
 	 * Postconditions: StepExecution Id will be set to a unique Long.
 	 * 
+	 * The ids of the whole collection are allocated first, then the records and
+	 * their index entries are written in pipelines of
+	 * {@code repository.step-execution.batch-size} step executions, so a
+	 * partitioned step does not pay a round trip per partition.
+	 * 
 	 * @param stepExecutions a collection of {@link JobExecution} instances to be
 	 *                       saved.
 	 */
@@ -87,14 +156,77 @@ public class RedisStepExecutionDao implements StepExecutionDao {
 	public void saveStepExecutions(Collection<StepExecution> stepExecutions) {
 		Assert.notNull(stepExecutions, "Attempt to save a null collection of step executions");
 
-		if (!stepExecutions.isEmpty()) {
-			final Iterator<StepExecution> iterator = stepExecutions.iterator();
-			while (iterator.hasNext()) {
-				StepExecution stepExecution = iterator.next();
-				saveStepExecution(stepExecution);
-			}
+		if (stepExecutions.isEmpty()) {
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+
+		List<StepExecution> batch = new ArrayList<>(stepExecutions);
+		List<RedisStepExecution> redisStepExecutions = new ArrayList<>(batch.size());
+		for (StepExecution stepExecution : batch) {
+			redisStepExecutions.add(prepareStepExecution(stepExecution));
+		}
+
+		int pipelines = 0;
+		for (int from = 0; from < batch.size(); from += batchSize) {
+			int to = Math.min(from + batchSize, batch.size());
+			List<StepExecution> chunk = batch.subList(from, to);
+			List<RedisStepExecution> redisChunk = redisStepExecutions.subList(from, to);
+
+			redisTemplate.executePipelined(new SessionCallback<Object>() {
+				@Override
+				public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+					for (int i = 0; i < chunk.size(); i++) {
+						writeStepExecution(chunk.get(i), redisChunk.get(i));
+					}
+					return null;
+				}
+			});
+			pipelines++;
 		}
 
+		LOGGER.info("Saved {} step executions in {} pipelines in {} ms, instead of {} round trips", batch.size(),
+				pipelines, System.currentTimeMillis() - start, batch.size());
+	}
+
+	/**
+	 * Validates a new step execution and assigns its id and first version.
+	 */
+	private RedisStepExecution prepareStepExecution(StepExecution stepExecution) {
+
+		Assert.isNull(stepExecution.getId(),
+				"to-be-saved (not updated) StepExecution can't already have an id assigned");
+		Assert.isNull(stepExecution.getVersion(),
+				"to-be-saved (not updated) StepExecution can't already have a version assigned");
+		validateStepExecution(stepExecution);
+
+		stepExecution.setId(stepExecutionIncrementer.nextLongValue());
+		stepExecution.incrementVersion(); // Should be 0
+		replicaReadRouter.recordWrite(stepExecution.getJobExecution());
+
+		String exitDescription = truncateExitDescription(stepExecution.getExitStatus().getExitDescription());
+		RedisStepExecution redisStepExecution = new RedisStepExecution(stepExecution);
+		redisStepExecution.setExistMessage(exitDescription);
+		return redisStepExecution;
+	}
+
+	/**
+	 * Writes the record of a new step execution, its version and its index
+	 * entries. Runs inside a transaction or a pipeline.
+	 */
+	private void writeStepExecution(StepExecution stepExecution, RedisStepExecution redisStepExecution) {
+
+		opsStepExecutionHash.put(AppConstants.STEP_EXECUTION_HASH_KEY,
+				String.valueOf(redisStepExecution.getStepExecutionId()), redisStepExecution);
+
+		opsStepExecutionIdSortedSet.add(getJobExecutionIndexKey(redisStepExecution.getJobExecutionId()),
+				String.valueOf(redisStepExecution.getStepExecutionId()), redisStepExecution.getStepExecutionId());
+
+		opsVersionHash.put(AppConstants.STEP_EXECUTION_VERSION_HASH_KEY,
+				String.valueOf(redisStepExecution.getStepExecutionId()), String.valueOf(redisStepExecution.getVersion()));
+
+		updateLastStepExecution(stepExecution);
 	}
 
 	/**
@@ -113,40 +245,99 @@ public class RedisStepExecutionDao implements StepExecutionDao {
 		// Do not check for existence of step execution considering
 		// it is saved at every commit point.
 
-		String exitDescription = truncateExitDescription(stepExecution.getExitStatus().getExitDescription());
-
 		// Attempt to prevent concurrent modification errors by blocking here if
 		// someone is already trying to do it.
 
 		synchronized (stepExecution) {
-			Integer version = stepExecution.getVersion() + 1;
-
-			RedisStepExecution redisStepExecution = new RedisStepExecution(stepExecution);
-			redisStepExecution.setExistMessage(exitDescription);
-			redisStepExecution.setVersion(version);
-
-			boolean count = opsStepExecutionSortedSet.add(AppConstants.STEP_EXECUTION_SET_KEY, redisStepExecution,
-					redisStepExecution.getStepExecutionId());
-
-			// Avoid concurrent modifications...
-			if (!count) {
-
-				Set<RedisStepExecution> currentStepExecution = opsStepExecutionSortedSet.rangeByScore(
-						AppConstants.STEP_EXECUTION_SET_KEY, stepExecution.getId(), stepExecution.getId());
-				if (!currentStepExecution.isEmpty()) {
-					for (RedisStepExecution execution : currentStepExecution) {
-						int currentVersion = execution.getVersion();
-						throw new OptimisticLockingFailureException(
-								"Attempt to update step execution id=" + stepExecution.getId() + " with wrong version ("
-										+ stepExecution.getVersion() + "), where current version is " + currentVersion);
+			if (writeBehind && deferUpdate(stepExecution)) {
+				return;
+			}
+			boolean written = false;
+			try {
+				writeStepExecutionUpdate(stepExecution);
+				written = true;
+			} finally {
+				if (writeBehind) {
+					if (written && stepExecution.getEndTime() == null) {
+						evictStaleDeferredUpdates();
+						deferredUpdates.put(stepExecution.getId(), new DeferredUpdate(stepExecution));
+					} else {
+						deferredUpdates.remove(stepExecution.getId());
 					}
 				}
 			}
+		}
 
-			redisStepExecution.incrementVersion();
-			stepExecution.incrementVersion();
+	}
+
+	/**
+	 * Hold the update back if it only changes the counters of a running step,
+	 * whose status has already been written, and the held back updates are still
+	 * within {@code repository.step-execution.write-behind.max-updates} and the
+	 * flush interval.
+	 *
+	 * @return whether the update has been held back
+	 */
+	private boolean deferUpdate(StepExecution stepExecution) {
+		DeferredUpdate deferredUpdate = deferredUpdates.get(stepExecution.getId());
+		if (deferredUpdate == null || stepExecution.getEndTime() != null
+				|| deferredUpdate.status != stepExecution.getStatus()
+				|| deferredUpdate.updates + 1 >= writeBehindMaxUpdates
+				|| System.currentTimeMillis() - deferredUpdate.writtenAt >= writeBehindInterval) {
+			return false;
 		}
+		deferredUpdate.updates++;
+		return true;
+	}
 
+	/**
+	 * Drops the held back state older than the interval, which no longer holds
+	 * back any update, so steps whose thread died without a last update do not
+	 * stay in the map.
+	 */
+	private void evictStaleDeferredUpdates() {
+		long now = System.currentTimeMillis();
+		deferredUpdates.values().removeIf(deferredUpdate -> now - deferredUpdate.writtenAt >= writeBehindInterval);
+	}
+
+	/**
+	 * Writes the step execution if the stored version is the one of the given
+	 * step execution, and increments its version. Callers hold the lock of the
+	 * step execution.
+	 */
+	private void writeStepExecutionUpdate(StepExecution stepExecution) {
+		String exitDescription = truncateExitDescription(stepExecution.getExitStatus().getExitDescription());
+		Integer version = stepExecution.getVersion() + 1;
+
+		RedisStepExecution redisStepExecution = new RedisStepExecution(stepExecution);
+		redisStepExecution.setExistMessage(exitDescription);
+		redisStepExecution.setVersion(version);
+
+		replicaReadRouter.recordWrite(stepExecution.getJobExecution());
+
+		// The record is overwritten in place, so a chunk commit replaces the
+		// previous version instead of adding another member. The version check
+		// and the write run in one script.
+		Integer currentVersion = redisEntityStore.compareAndSet(AppConstants.STEP_EXECUTION_HASH_KEY,
+				AppConstants.STEP_EXECUTION_SET_KEY, AppConstants.STEP_EXECUTION_VERSION_HASH_KEY,
+				stepExecution.getId(), stepExecution.getVersion(), redisStepExecution, RedisStepExecution::getVersion);
+		redisExecutionCache.invalidateStepExecution(stepExecution.getId());
+
+		// Avoid concurrent modifications...
+		if (currentVersion == null || !currentVersion.equals(stepExecution.getVersion())) {
+			throw new OptimisticLockingFailureException("Attempt to update step execution id=" + stepExecution.getId()
+					+ " with wrong version (" + stepExecution.getVersion() + "), where current version is "
+					+ currentVersion);
+		}
+
+		// The pointer was written on save, refreshing it when the step ends also
+		// covers step executions saved before the pointer existed.
+		if (stepExecution.getEndTime() != null) {
+			updateLastStepExecution(stepExecution);
+		}
+
+		redisStepExecution.incrementVersion();
+		stepExecution.incrementVersion();
 	}
 
 	/**
@@ -159,13 +350,10 @@ public class RedisStepExecutionDao implements StepExecutionDao {
 	@Override
 	public StepExecution getStepExecution(JobExecution jobExecution, Long stepExecutionId) {
 
-		Set<RedisStepExecution> redisStepExecutions = opsStepExecutionSortedSet
-				.rangeByScore(AppConstants.STEP_EXECUTION_SET_KEY, stepExecutionId, stepExecutionId);
-		if (!redisStepExecutions.isEmpty()) {
-			for (RedisStepExecution stepExecution : redisStepExecutions) {
-				if (stepExecution.getJobExecutionId().equals(jobExecution.getId())) {
-					return getStepExecution(stepExecution, jobExecution);
-				}
+		for (RedisStepExecution stepExecution : getRedisStepExecutions(
+				Collections.singleton(String.valueOf(stepExecutionId)))) {
+			if (stepExecution.getJobExecutionId().equals(jobExecution.getId())) {
+				return getStepExecution(stepExecution, jobExecution);
 			}
 		}
 		return null;
@@ -179,17 +367,27 @@ public class RedisStepExecutionDao implements StepExecutionDao {
 	@Override
 	public void addStepExecutions(JobExecution jobExecution) {
 
-		List<StepExecution> result = new ArrayList<>();
-		Set<RedisStepExecution> stepExecutions = opsStepExecutionSortedSet.range(AppConstants.STEP_EXECUTION_SET_KEY, 0,
-				-1);
-		if (!stepExecutions.isEmpty()) {
-			for (RedisStepExecution step : stepExecutions) {
-				if (step.getJobExecutionId().equals(jobExecution.getId())) {
-					result.add(getStepExecution(step, jobExecution));
-				}
+		Collection<String> stepExecutionIds = opsStepExecutionIdSortedSet
+				.range(getJobExecutionIndexKey(jobExecution.getId()), 0, -1);
+		if (stepExecutionIds == null || stepExecutionIds.isEmpty()) {
+			// Versions of the same legacy record are read once, in id order.
+			Set<Long> legacyStepExecutionIds = new TreeSet<>();
+			for (RedisStepExecution legacyStepExecution : redisLegacyIndex.indexStepExecutions(jobExecution.getId())) {
+				legacyStepExecutionIds.add(legacyStepExecution.getStepExecutionId());
 			}
+			stepExecutionIds = new ArrayList<>();
+			for (Long legacyStepExecutionId : legacyStepExecutionIds) {
+				stepExecutionIds.add(String.valueOf(legacyStepExecutionId));
+			}
+		}
+		if (stepExecutionIds.isEmpty()) {
+			return;
 		}
 
+		// Creating the StepExecution attaches it to the given JobExecution.
+		for (RedisStepExecution step : getRedisStepExecutions(stepExecutionIds)) {
+			getStepExecution(step, jobExecution);
+		}
 	}
 
 	/**
@@ -203,45 +401,47 @@ public class RedisStepExecutionDao implements StepExecutionDao {
 	@Override
 	public StepExecution getLastStepExecution(JobInstance jobInstance, String stepName) {
 
-		List<RedisStepExecution> result = new ArrayList<>();
-		List<RedisJobExecution> listJobExecution = new ArrayList<>();
-		Set<RedisStepExecution> stepExecutions = opsStepExecutionSortedSet.range(AppConstants.STEP_EXECUTION_SET_KEY, 0,
-				-1);
-		Set<RedisJobExecution> jobExecutions = opsJobExecutionSortedSet.range(AppConstants.JOB_EXECUTION_SET_KEY, 0,
-				-1);
-		if (!jobExecutions.isEmpty()) {
-			for (RedisJobExecution rje : jobExecutions) {
-				if (rje.getJobInstanceId().equals(jobInstance.getId())) {
-					listJobExecution.add(rje);
-				}
+		String stepExecutionId = opsLastStepExecutionHash.get(AppConstants.LAST_STEP_EXECUTION_HASH_KEY,
+				getLastStepExecutionField(jobInstance.getId(), stepName));
+		if (stepExecutionId == null) {
+			Long legacyStepExecutionId = redisLegacyIndex.findLastStepExecutionId(jobInstance.getId(), stepName);
+			if (legacyStepExecutionId == null) {
+				return null;
 			}
+			stepExecutionId = String.valueOf(legacyStepExecutionId);
 		}
 
-		for (RedisJobExecution rje : listJobExecution) {
-			for (RedisStepExecution rse : stepExecutions) {
-				if (rse.getStepName().equals(stepName) && rje.getJobExecutionId().equals(rse.getJobExecutionId())) {
-					Long jobExecutionId = rje.getJobExecutionId();
-					JobExecution jobExecution = new JobExecution(jobExecutionId);
-					jobExecution.setStartTime(rje.getStartTime());
-					jobExecution.setEndTime(rje.getEndTime());
-					jobExecution.setStatus(BatchStatus.valueOf(rje.getStatus()));
-					jobExecution.setExitStatus(new ExitStatus(rje.getExitCode(), rje.getExitMessage()));
-					jobExecution.setCreateTime(rje.getCreateTime());
-					jobExecution.setLastUpdated(rje.getLastUpdated());
-					jobExecution.setVersion(rje.getVersion());
-					rse.setJobExecution(jobExecution);
-					result.add(rse);
-				}
-			}
+		List<RedisStepExecution> stepExecutions = getRedisStepExecutions(Collections.singleton(stepExecutionId));
+		if (stepExecutions.isEmpty()) {
+			return null;
 		}
+		RedisStepExecution rse = stepExecutions.get(0);
 
-		result.sort(Comparator.comparing(RedisStepExecution::getStartTime).reversed()
-				.thenComparing(RedisStepExecution::getStepExecutionId).reversed());
-		if (!result.isEmpty()) {
-			return getStepExecution(result.get(0), result.get(0).getJobExecution());
+		RedisJobExecution rje = redisExecutionCache.getJobExecution(rse.getJobExecutionId());
+		if (rje == null) {
+			return null;
 		}
 
-		return null;
+		JobExecution jobExecution = new JobExecution(rje.getJobExecutionId());
+		jobExecution.setStartTime(rje.getStartTime());
+		jobExecution.setEndTime(rje.getEndTime());
+		jobExecution.setStatus(BatchStatus.valueOf(rje.getStatus()));
+		jobExecution.setExitStatus(new ExitStatus(rje.getExitCode(), rje.getExitMessage()));
+		jobExecution.setCreateTime(rje.getCreateTime());
+		jobExecution.setLastUpdated(rje.getLastUpdated());
+		jobExecution.setVersion(rje.getVersion());
+		return getStepExecution(rse, jobExecution);
+	}
+
+	/**
+	 * Points the (job instance, step name) pair at the given step execution. Step
+	 * executions are saved in start order, so the last one saved is the one a
+	 * restart has to resume from.
+	 */
+	private void updateLastStepExecution(StepExecution stepExecution) {
+		opsLastStepExecutionHash.put(AppConstants.LAST_STEP_EXECUTION_HASH_KEY,
+				getLastStepExecutionField(stepExecution.getJobExecution().getJobId(), stepExecution.getStepName()),
+				String.valueOf(stepExecution.getId()));
 	}
 
 	private String truncateExitDescription(String description) {
@@ -284,4 +484,38 @@ public class RedisStepExecutionDao implements StepExecutionDao {
 		stepExecution.setVersion(redisStepExecution.getVersion());
 		return stepExecution;
 	}
+
+	/**
+	 * Loads the step execution records for the given ids from the execution cache
+	 * or with a single read, keeping the order of the ids.
+	 */
+	private List<RedisStepExecution> getRedisStepExecutions(Collection<String> stepExecutionIds) {
+		return redisExecutionCache.getStepExecutions(stepExecutionIds);
+	}
+
+	static String getLastStepExecutionField(Long jobInstanceId, String stepName) {
+		return jobInstanceId + "|" + stepName;
+	}
+
+	static String getJobExecutionIndexKey(Long jobExecutionId) {
+		return AppConstants.STEP_EXECUTION_BY_JOB_EXECUTION_KEY_PREFIX + jobExecutionId;
+	}
+
+	/**
+	 * The updates of a running step execution held back since its last write.
+	 */
+	private static final class DeferredUpdate {
+
+		private final BatchStatus status;
+
+		private final long writtenAt;
+
+		private int updates;
+
+		private DeferredUpdate(StepExecution stepExecution) {
+			this.status = stepExecution.getStatus();
+			this.writtenAt = System.currentTimeMillis();
+		}
+
+	}
 }
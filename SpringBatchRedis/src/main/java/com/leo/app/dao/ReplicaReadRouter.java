@@ -0,0 +1,157 @@
+package com.leo.app.dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes explorer reads to the read replica configured with
+ * {@code repository.replica.port}, while this node keeps reading what it wrote
+ * recently from the primary.
+ *
+ * The DAOs record the job names, instances and executions they write. For
+ * {@code repository.replica.read-your-writes-ms} after a write, reads that
+ * involve one of them stay on the primary, so a launching node never misses its
+ * own writes because of replication lag. Other reads run with the replica flag
+ * set, which the routing connection factory hands a replica connection for.
+ *
+ * @author anoop
+ *
+ */
+@Component
+public class ReplicaReadRouter {
+
+	private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+	private static final int CLEANUP_THRESHOLD = 1000;
+
+	@Value("${repository.replica.port:0}")
+	private int replicaPort;
+
+	@Value("${repository.replica.read-your-writes-ms:5000}")
+	private long readYourWritesWindow;
+
+	private final Map<String, Long> recentJobNames = new ConcurrentHashMap<>();
+
+	private final Map<Long, Long> recentJobInstances = new ConcurrentHashMap<>();
+
+	private final Map<Long, Long> recentJobExecutions = new ConcurrentHashMap<>();
+
+	/**
+	 * @return whether the current thread reads from the replica
+	 */
+	public static boolean isReplicaRead() {
+		return Boolean.TRUE.equals(REPLICA_READ.get());
+	}
+
+	public boolean isEnabled() {
+		return replicaPort > 0;
+	}
+
+	/**
+	 * Run the read on the replica, or on the primary if it involves a recent
+	 * write of this node or no replica is configured.
+	 *
+	 * @param recentlyWritten whether the read involves a recent write
+	 * @param read            the read
+	 * @return the result of the read
+	 * @throws E the exception of the read
+	 */
+	public <T, E extends Exception> T read(boolean recentlyWritten, Read<T, E> read) throws E {
+		if (!isEnabled() || recentlyWritten || isReplicaRead()) {
+			return read.get();
+		}
+		REPLICA_READ.set(Boolean.TRUE);
+		try {
+			return read.get();
+		} finally {
+			REPLICA_READ.remove();
+		}
+	}
+
+	public void recordWrite(JobInstance jobInstance) {
+		if (isEnabled()) {
+			long now = System.currentTimeMillis();
+			record(recentJobNames, jobInstance.getJobName(), now);
+			record(recentJobInstances, jobInstance.getId(), now);
+		}
+	}
+
+	public void recordWrite(JobExecution jobExecution) {
+		if (isEnabled()) {
+			long now = System.currentTimeMillis();
+			record(recentJobExecutions, jobExecution.getId(), now);
+			JobInstance jobInstance = jobExecution.getJobInstance();
+			if (jobInstance != null) {
+				record(recentJobNames, jobInstance.getJobName(), now);
+				record(recentJobInstances, jobInstance.getId(), now);
+			}
+		}
+	}
+
+	public boolean isRecentJobName(String jobName) {
+		return isRecent(recentJobNames, jobName);
+	}
+
+	/**
+	 * @param jobNamePattern a job name where * stands for any sequence of
+	 *                       characters
+	 */
+	public boolean isRecentJobNameMatching(String jobNamePattern) {
+		if (jobNamePattern.indexOf('*') < 0) {
+			return isRecentJobName(jobNamePattern);
+		}
+		Pattern pattern = RedisJobInstanceDao.getJobNamePattern(jobNamePattern);
+		for (String jobName : recentJobNames.keySet()) {
+			if (pattern.matcher(jobName).matches() && isRecentJobName(jobName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean hasRecentJobNames() {
+		for (String jobName : recentJobNames.keySet()) {
+			if (isRecentJobName(jobName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean isRecentJobInstance(Long jobInstanceId) {
+		return jobInstanceId != null && isRecent(recentJobInstances, jobInstanceId);
+	}
+
+	public boolean isRecentJobExecution(Long jobExecutionId) {
+		return jobExecutionId != null && isRecent(recentJobExecutions, jobExecutionId);
+	}
+
+	private <K> boolean isRecent(Map<K, Long> writes, K key) {
+		Long writtenAt = writes.get(key);
+		return writtenAt != null && System.currentTimeMillis() - writtenAt < readYourWritesWindow;
+	}
+
+	private <K> void record(Map<K, Long> writes, K key, long now) {
+		writes.put(key, now);
+		if (writes.size() > CLEANUP_THRESHOLD) {
+			writes.values().removeIf(writtenAt -> now - writtenAt >= readYourWritesWindow);
+		}
+	}
+
+	/**
+	 * A read that may throw a checked exception.
+	 */
+	@FunctionalInterface
+	public interface Read<T, E extends Exception> {
+
+		T get() throws E;
+
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.leo.app.dao;
+
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.NoSuchJobException;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * {@link JobExplorer} that runs the reads of the given explorer on the read
+ * replica, except the reads of job names, instances and executions this node
+ * has written recently.
+ *
+ * @author anoop
+ *
+ * @see ReplicaReadRouter
+ */
+public class ReplicaRoutingJobExplorer implements JobExplorer {
+
+	private final JobExplorer delegate;
+
+	private final ReplicaReadRouter replicaReadRouter;
+
+	public ReplicaRoutingJobExplorer(JobExplorer delegate, ReplicaReadRouter replicaReadRouter) {
+		Assert.notNull(delegate, "A job explorer is required");
+		Assert.notNull(replicaReadRouter, "A replica read router is required");
+		this.delegate = delegate;
+		this.replicaReadRouter = replicaReadRouter;
+	}
+
+	@Override
+	public List<JobInstance> getJobInstances(String jobName, int start, int count) {
+		return replicaReadRouter.read(replicaReadRouter.isRecentJobName(jobName),
+				() -> delegate.getJobInstances(jobName, start, count));
+	}
+
+	@Override
+	@Nullable
+	public JobInstance getLastJobInstance(String jobName) {
+		return replicaReadRouter.read(replicaReadRouter.isRecentJobName(jobName),
+				() -> delegate.getLastJobInstance(jobName));
+	}
+
+	@Override
+	@Nullable
+	public JobExecution getJobExecution(@Nullable Long executionId) {
+		return replicaReadRouter.read(replicaReadRouter.isRecentJobExecution(executionId),
+				() -> delegate.getJobExecution(executionId));
+	}
+
+	@Override
+	@Nullable
+	public StepExecution getStepExecution(@Nullable Long jobExecutionId, @Nullable Long stepExecutionId) {
+		return replicaReadRouter.read(replicaReadRouter.isRecentJobExecution(jobExecutionId),
+				() -> delegate.getStepExecution(jobExecutionId, stepExecutionId));
+	}
+
+	@Override
+	@Nullable
+	public JobInstance getJobInstance(@Nullable Long instanceId) {
+		return replicaReadRouter.read(replicaReadRouter.isRecentJobInstance(instanceId),
+				() -> delegate.getJobInstance(instanceId));
+	}
+
+	@Override
+	public List<JobExecution> getJobExecutions(JobInstance jobInstance) {
+		return replicaReadRouter.read(replicaReadRouter.isRecentJobInstance(jobInstance.getId()),
+				() -> delegate.getJobExecutions(jobInstance));
+	}
+
+	@Override
+	@Nullable
+	public JobExecution getLastJobExecution(JobInstance jobInstance) {
+		return replicaReadRouter.read(replicaReadRouter.isRecentJobInstance(jobInstance.getId()),
+				() -> delegate.getLastJobExecution(jobInstance));
+	}
+
+	@Override
+	public Set<JobExecution> findRunningJobExecutions(@Nullable String jobName) {
+		return replicaReadRouter.read(jobName == null || replicaReadRouter.isRecentJobName(jobName),
+				() -> delegate.findRunningJobExecutions(jobName));
+	}
+
+	@Override
+	public List<String> getJobNames() {
+		return replicaReadRouter.read(replicaReadRouter.hasRecentJobNames(), delegate::getJobNames);
+	}
+
+	@Override
+	public List<JobInstance> findJobInstancesByJobName(String jobName, int start, int count) {
+		return replicaReadRouter.read(replicaReadRouter.isRecentJobNameMatching(jobName),
+				() -> delegate.findJobInstancesByJobName(jobName, start, count));
+	}
+
+	@Override
+	public int getJobInstanceCount(@Nullable String jobName) throws NoSuchJobException {
+		return replicaReadRouter.read(jobName == null || replicaReadRouter.isRecentJobName(jobName),
+				() -> delegate.getJobInstanceCount(jobName));
+	}
+
+}
@@ -0,0 +1,147 @@
+package com.leo.app.dao.codec;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Reads a record written by {@link RecordWriter}. The fields have to be read in
+ * the order they were written.
+ * 
+ * @author anoop
+ *
+ */
+final class RecordReader {
+
+	/**
+	 * First byte of a binary record. JSON documents never start with it.
+	 */
+	static final int MAGIC = 0;
+
+	static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Strings written as their index in this table: batch and exit statuses.
+	 * Entries may only be appended, so the parameter types and flags of the
+	 * former parameter records keep their place.
+	 */
+	static final List<String> INTERNED = Arrays.asList("COMPLETED", "STARTING", "STARTED", "STOPPING", "STOPPED",
+			"FAILED", "ABANDONED", "UNKNOWN", "EXECUTING", "NOOP", "STRING", "DATE", "LONG", "DOUBLE", "Y", "N");
+
+	private final byte[] bytes;
+
+	private final int type;
+
+	private final long nullMask;
+
+	private int position;
+
+	private int field;
+
+	RecordReader(byte[] bytes) {
+		this.bytes = bytes;
+		if (!isBinary(bytes)) {
+			throw new SerializationException("Not a binary repository record");
+		}
+		position = 1;
+		int formatVersion = readByte();
+		if (formatVersion != FORMAT_VERSION) {
+			throw new SerializationException("Unsupported repository record format " + formatVersion);
+		}
+		type = readByte();
+		nullMask = readVarLong();
+	}
+
+	static boolean isBinary(byte[] bytes) {
+		return bytes.length > 2 && bytes[0] == MAGIC;
+	}
+
+	int getType() {
+		return type;
+	}
+
+	Long readLong() {
+		if (nextIsNull()) {
+			return null;
+		}
+		return readZigZag();
+	}
+
+	Integer readInt() {
+		if (nextIsNull()) {
+			return null;
+		}
+		return (int) readZigZag();
+	}
+
+	Date readDate() {
+		if (nextIsNull()) {
+			return null;
+		}
+		return new Date(readZigZag());
+	}
+
+	String readString() {
+		if (nextIsNull()) {
+			return null;
+		}
+		return readString(StandardCharsets.UTF_8);
+	}
+
+	String readInterned() {
+		if (nextIsNull()) {
+			return null;
+		}
+		int index = (int) readVarLong() - 1;
+		if (index < 0) {
+			return readString(StandardCharsets.UTF_8);
+		}
+		if (index >= INTERNED.size()) {
+			throw new SerializationException("Unknown interned string " + index);
+		}
+		return INTERNED.get(index);
+	}
+
+	private boolean nextIsNull() {
+		return (nullMask & (1L << field++)) != 0;
+	}
+
+	private String readString(Charset charset) {
+		int length = (int) readVarLong();
+		if (length < 0 || position + length > bytes.length) {
+			throw new SerializationException("Truncated repository record");
+		}
+		String value = new String(bytes, position, length, charset);
+		position += length;
+		return value;
+	}
+
+	private long readZigZag() {
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private long readVarLong() {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new SerializationException("Malformed varint in repository record");
+	}
+
+	private int readByte() {
+		if (position >= bytes.length) {
+			throw new SerializationException("Truncated repository record");
+		}
+		return bytes[position++] & 0xFF;
+	}
+
+}
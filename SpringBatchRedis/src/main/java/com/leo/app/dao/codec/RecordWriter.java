@@ -0,0 +1,93 @@
+package com.leo.app.dao.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Writes one binary record: a header with the record type and a mask of the
+ * null fields, followed by the non-null fields in schema order.
+ * 
+ * Whole numbers and dates (as epoch milliseconds) are written as zig-zag
+ * varints, strings as a varint length followed by their bytes.
+ * 
+ * @author anoop
+ *
+ */
+final class RecordWriter {
+
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+
+	/**
+	 * @param type   the record type
+	 * @param fields the field values in schema order, only checked for null here
+	 */
+	RecordWriter(int type, Object... fields) {
+		out.write(RecordReader.MAGIC);
+		out.write(RecordReader.FORMAT_VERSION);
+		out.write(type);
+		long nullMask = 0;
+		for (int i = 0; i < fields.length; i++) {
+			if (fields[i] == null) {
+				nullMask |= 1L << i;
+			}
+		}
+		writeVarLong(nullMask);
+	}
+
+	void writeLong(Long value) {
+		if (value != null) {
+			writeVarLong((value << 1) ^ (value >> 63));
+		}
+	}
+
+	void writeInt(Integer value) {
+		if (value != null) {
+			writeLong(value.longValue());
+		}
+	}
+
+	void writeDate(Date value) {
+		if (value != null) {
+			writeLong(value.getTime());
+		}
+	}
+
+	void writeString(String value) {
+		if (value != null) {
+			writeBytes(value.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Writes a string of the interned table as its index, any other string in
+	 * full.
+	 */
+	void writeInterned(String value) {
+		if (value != null) {
+			int index = RecordReader.INTERNED.indexOf(value);
+			writeVarLong(index + 1L);
+			if (index < 0) {
+				writeString(value);
+			}
+		}
+	}
+
+	byte[] toByteArray() {
+		return out.toByteArray();
+	}
+
+	private void writeBytes(byte[] bytes) {
+		writeVarLong(bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	private void writeVarLong(long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+}
@@ -0,0 +1,182 @@
+package com.leo.app.dao.codec;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.Assert;
+
+import com.leo.app.dao.model.RedisJobExecution;
+import com.leo.app.dao.model.RedisJobInstance;
+import com.leo.app.dao.model.RedisStepExecution;
+
+/**
+ * Value serializer of the job repository.
+ * 
+ * With the {@code binary} format the repository model classes are written as
+ * compact binary records with a fixed field order per class, so neither type
+ * names nor field names are stored. Any other value, and every value with the
+ * {@code json} format, is written by the JSON serializer.
+ * 
+ * Both formats are read whatever the configured format is, so records written
+ * as JSON stay readable after switching to binary and the other way round.
+ * 
+ * @author anoop
+ *
+ */
+public class RepositoryRedisSerializer implements RedisSerializer<Object> {
+
+	public static final String JSON = "json";
+
+	public static final String BINARY = "binary";
+
+	private static final int JOB_INSTANCE = 1;
+
+	private static final int JOB_EXECUTION = 2;
+
+	private static final int STEP_EXECUTION = 3;
+
+	private final RedisSerializer<Object> jsonSerializer;
+
+	private final boolean binary;
+
+	/**
+	 * @param jsonSerializer the serializer for JSON values
+	 * @param format         {@value #JSON} or {@value #BINARY}
+	 */
+	public RepositoryRedisSerializer(RedisSerializer<Object> jsonSerializer, String format) {
+		Assert.notNull(jsonSerializer, "A JSON serializer is required");
+		Assert.isTrue(JSON.equals(format) || BINARY.equals(format),
+				"The repository serializer format must be json or binary, not " + format);
+		this.jsonSerializer = jsonSerializer;
+		this.binary = BINARY.equals(format);
+	}
+
+	@Override
+	public byte[] serialize(Object value) throws SerializationException {
+		if (binary) {
+			RecordWriter writer = write(value);
+			if (writer != null) {
+				return writer.toByteArray();
+			}
+		}
+		return jsonSerializer.serialize(value);
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes) throws SerializationException {
+		if (bytes == null || bytes.length == 0) {
+			return null;
+		}
+		if (RecordReader.isBinary(bytes)) {
+			return read(new RecordReader(bytes));
+		}
+		return jsonSerializer.deserialize(bytes);
+	}
+
+	private RecordWriter write(Object value) {
+		RecordWriter writer = null;
+		if (value instanceof RedisJobInstance) {
+			RedisJobInstance instance = (RedisJobInstance) value;
+			writer = new RecordWriter(JOB_INSTANCE, instance.getJobInstanceId(), instance.getJobName(),
+					instance.getJobKey(), instance.getVersion());
+			writer.writeLong(instance.getJobInstanceId());
+			writer.writeString(instance.getJobName());
+			writer.writeString(instance.getJobKey());
+			writer.writeInt(instance.getVersion());
+		} else if (value instanceof RedisJobExecution) {
+			RedisJobExecution execution = (RedisJobExecution) value;
+			writer = new RecordWriter(JOB_EXECUTION, execution.getJobExecutionId(), execution.getJobInstanceId(),
+					execution.getStartTime(), execution.getEndTime(), execution.getStatus(), execution.getExitCode(),
+					execution.getExitMessage(), execution.getVersion(), execution.getCreateTime(),
+					execution.getLastUpdated(), execution.getJobConfigurationLocation());
+			writer.writeLong(execution.getJobExecutionId());
+			writer.writeLong(execution.getJobInstanceId());
+			writer.writeDate(execution.getStartTime());
+			writer.writeDate(execution.getEndTime());
+			writer.writeInterned(execution.getStatus());
+			writer.writeInterned(execution.getExitCode());
+			writer.writeString(execution.getExitMessage());
+			writer.writeInt(execution.getVersion());
+			writer.writeDate(execution.getCreateTime());
+			writer.writeDate(execution.getLastUpdated());
+			writer.writeString(execution.getJobConfigurationLocation());
+		} else if (value instanceof RedisStepExecution) {
+			RedisStepExecution execution = (RedisStepExecution) value;
+			writer = new RecordWriter(STEP_EXECUTION, execution.getStepExecutionId(), execution.getVersion(),
+					execution.getStepName(), execution.getJobExecutionId(), execution.getStartTime(),
+					execution.getEndTime(), execution.getStatus(), execution.getCommitCount(),
+					execution.getReadCount(), execution.getFilterCount(), execution.getWriteCount(),
+					execution.getExitCode(), execution.getExistMessage(), execution.getReadSkipCount(),
+					execution.getWriteSkipCount(), execution.getProcessSkipCount(), execution.getRollbackCount(),
+					execution.getLastUpdated());
+			writer.writeLong(execution.getStepExecutionId());
+			writer.writeInt(execution.getVersion());
+			writer.writeString(execution.getStepName());
+			writer.writeLong(execution.getJobExecutionId());
+			writer.writeDate(execution.getStartTime());
+			writer.writeDate(execution.getEndTime());
+			writer.writeInterned(execution.getStatus());
+			writer.writeInt(execution.getCommitCount());
+			writer.writeInt(execution.getReadCount());
+			writer.writeInt(execution.getFilterCount());
+			writer.writeInt(execution.getWriteCount());
+			writer.writeInterned(execution.getExitCode());
+			writer.writeString(execution.getExistMessage());
+			writer.writeInt(execution.getReadSkipCount());
+			writer.writeInt(execution.getWriteSkipCount());
+			writer.writeInt(execution.getProcessSkipCount());
+			writer.writeInt(execution.getRollbackCount());
+			writer.writeDate(execution.getLastUpdated());
+		}
+		return writer;
+	}
+
+	private Object read(RecordReader reader) {
+		switch (reader.getType()) {
+		case JOB_INSTANCE:
+			RedisJobInstance instance = new RedisJobInstance();
+			instance.setJobInstanceId(reader.readLong());
+			instance.setJobName(reader.readString());
+			instance.setJobKey(reader.readString());
+			instance.setVersion(reader.readInt());
+			return instance;
+		case JOB_EXECUTION:
+			RedisJobExecution jobExecution = new RedisJobExecution();
+			jobExecution.setJobExecutionId(reader.readLong());
+			jobExecution.setJobInstanceId(reader.readLong());
+			jobExecution.setStartTime(reader.readDate());
+			jobExecution.setEndTime(reader.readDate());
+			jobExecution.setStatus(reader.readInterned());
+			jobExecution.setExitCode(reader.readInterned());
+			jobExecution.setExitMessage(reader.readString());
+			jobExecution.setVersion(reader.readInt());
+			jobExecution.setCreateTime(reader.readDate());
+			jobExecution.setLastUpdated(reader.readDate());
+			jobExecution.setJobConfigurationLocation(reader.readString());
+			return jobExecution;
+		case STEP_EXECUTION:
+			RedisStepExecution stepExecution = new RedisStepExecution();
+			stepExecution.setStepExecutionId(reader.readLong());
+			stepExecution.setVersion(reader.readInt());
+			stepExecution.setStepName(reader.readString());
+			stepExecution.setJobExecutionId(reader.readLong());
+			stepExecution.setStartTime(reader.readDate());
+			stepExecution.setEndTime(reader.readDate());
+			stepExecution.setStatus(reader.readInterned());
+			stepExecution.setCommitCount(reader.readInt());
+			stepExecution.setReadCount(reader.readInt());
+			stepExecution.setFilterCount(reader.readInt());
+			stepExecution.setWriteCount(reader.readInt());
+			stepExecution.setExitCode(reader.readInterned());
+			stepExecution.setExistMessage(reader.readString());
+			stepExecution.setReadSkipCount(reader.readInt());
+			stepExecution.setWriteSkipCount(reader.readInt());
+			stepExecution.setProcessSkipCount(reader.readInt());
+			stepExecution.setRollbackCount(reader.readInt());
+			stepExecution.setLastUpdated(reader.readDate());
+			return stepExecution;
+		default:
+			throw new SerializationException("Unknown repository record type " + reader.getType());
+		}
+	}
+
+}
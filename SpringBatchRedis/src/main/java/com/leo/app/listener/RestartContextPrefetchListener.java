@@ -0,0 +1,64 @@
+package com.leo.app.listener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.leo.app.dao.RedisExecutionContextDao;
+import com.leo.app.dao.RedisJobExecutionDao;
+import com.leo.app.dao.RedisStepExecutionDao;
+
+/**
+ * On a restart, loads the step contexts of the execution the restart resumes
+ * from in one read before the first step runs. The job repository then gets
+ * them from the prefetch instead of reading them step by step.
+ * 
+ * The listener is registered on every job by
+ * {@link com.leo.app.config.RestartContextPrefetchRegistrar}.
+ * 
+ * @author anoop
+ *
+ */
+@Component
+public class RestartContextPrefetchListener implements JobExecutionListener {
+
+	@Autowired
+	RedisJobExecutionDao redisJobExecutionDao;
+
+	@Autowired
+	RedisStepExecutionDao redisStepExecutionDao;
+
+	@Autowired
+	RedisExecutionContextDao redisExecutionContextDao;
+
+	private final Map<Long, Long> previousExecutionIds = new ConcurrentHashMap<>();
+
+	@Override
+	public void beforeJob(JobExecution jobExecution) {
+		// Sorted backwards by creation, the first one is the current execution and
+		// the second one, if any, the execution the restart resumes from.
+		List<JobExecution> jobExecutions = redisJobExecutionDao.findJobExecutions(jobExecution.getJobInstance(), 2);
+		for (JobExecution previous : jobExecutions) {
+			if (!previous.getId().equals(jobExecution.getId())) {
+				redisStepExecutionDao.addStepExecutions(previous);
+				redisExecutionContextDao.prefetchExecutionContexts(previous);
+				previousExecutionIds.put(jobExecution.getId(), previous.getId());
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void afterJob(JobExecution jobExecution) {
+		Long previousExecutionId = previousExecutionIds.remove(jobExecution.getId());
+		if (previousExecutionId != null) {
+			redisExecutionContextDao.evictPrefetchedExecutionContexts(previousExecutionId);
+		}
+	}
+
+}
@@ -25,6 +25,9 @@ public class JobScheduler {
 	@Autowired	
 	Job bookWriterJob;
 
+	@Autowired
+	Job repositoryCompactionJob;
+
 	@Scheduled(cron = "${cron.book.reader.exp}")
     public void perform() throws Exception
     {
@@ -33,4 +36,16 @@ public class JobScheduler {
                 .toJobParameters();
         jobLauncher.run(bookWriterJob, params);
     }
+
+	/**
+	 * Compacts the legacy sorted sets of the job repository, disabled unless a
+	 * cron expression is configured.
+	 */
+	@Scheduled(cron = "${cron.repository.compaction.exp}")
+	public void compactRepository() throws Exception {
+		JobParameters params = new JobParametersBuilder()
+				.addString("JobID", String.valueOf(System.currentTimeMillis()))
+				.toJobParameters();
+		jobLauncher.run(repositoryCompactionJob, params);
+	}
 }
@@ -0,0 +1,48 @@
+package com.leo.app.tasklet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.leo.app.dao.RedisRepositoryCompactor;
+import com.leo.app.dao.RedisRepositoryCompactor.CompactionResult;
+
+/**
+ * Indexes the legacy records of the job repository and removes superseded
+ * execution versions from its legacy sorted sets.
+ * 
+ * @author anoop
+ *
+ */
+@Component
+public class RepositoryCompactionTasklet implements Tasklet {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryCompactionTasklet.class);
+
+	@Autowired
+	RedisRepositoryCompactor redisRepositoryCompactor;
+
+	@Override
+	public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+
+		CompactionResult result = redisRepositoryCompactor.compact();
+		LOGGER.info("job repository compaction finished: {}", result);
+
+		ExecutionContext executionContext = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+		executionContext.putLong("indexedMembers", result.getIndexedMembers());
+		executionContext.putLong("scannedMembers", result.getScannedMembers());
+		executionContext.putLong("removedMembers", result.getRemovedMembers());
+		executionContext.putLong("reclaimedBytes", result.getReclaimedBytes());
+		contribution.setExitStatus(ExitStatus.COMPLETED.addExitDescription(result.toString()));
+
+		return RepeatStatus.FINISHED;
+	}
+
+}
@@ -14,5 +14,31 @@ public class AppConstants {
 	public static final String JOB_INSTANCE_STRING_KEY = "JOB_NAME_KEY";
 	public static final String STEP_EXECUTION_SET_KEY = "STEP_EXECUTION_SET_KEY";
 
+	public static final String JOB_EXECUTION_HASH_KEY = "JOB_EXECUTION_HASH_KEY";
+	public static final String STEP_EXECUTION_HASH_KEY = "STEP_EXECUTION_HASH_KEY";
+	public static final String JOB_EXECUTION_VERSION_HASH_KEY = "JOB_EXECUTION_VERSION_HASH_KEY";
+	public static final String STEP_EXECUTION_VERSION_HASH_KEY = "STEP_EXECUTION_VERSION_HASH_KEY";
+
+	public static final String JOB_NAME_INDEX_KEY = "JOB_NAME_INDEX_KEY";
+	public static final String JOB_INSTANCE_BY_NAME_KEY_PREFIX = "JOB_INSTANCE_BY_NAME_KEY:";
+	public static final String JOB_INSTANCE_JOB_KEY_HASH_KEY = "JOB_INSTANCE_JOB_KEY_HASH_KEY";
+	public static final String JOB_EXECUTION_BY_INSTANCE_KEY_PREFIX = "JOB_EXECUTION_BY_INSTANCE_KEY:";
+	public static final String JOB_EXECUTION_INSTANCE_HASH_KEY = "JOB_EXECUTION_INSTANCE_HASH_KEY";
+	public static final String JOB_EXECUTION_PARAMS_KEY_PREFIX = "JOB_EXECUTION_PARAMS_KEY:";
+	public static final String RUNNING_JOB_EXECUTION_KEY_PREFIX = "RUNNING_JOB_EXECUTION_KEY:";
+	public static final String STEP_EXECUTION_BY_JOB_EXECUTION_KEY_PREFIX = "STEP_EXECUTION_BY_JOB_EXECUTION_KEY:";
+	public static final String JOB_EXECUTION_CONTEXT_KEY_PREFIX = "JOB_EXECUTION_CONTEXT_KEY:";
+	public static final String STEP_EXECUTION_CONTEXT_KEY_PREFIX = "STEP_EXECUTION_CONTEXT_KEY:";
+
+	public static final String EXECUTION_INVALIDATION_CHANNEL = "EXECUTION_INVALIDATION_CHANNEL";
+	public static final String LAST_STEP_EXECUTION_HASH_KEY = "LAST_STEP_EXECUTION_HASH_KEY";
+	public static final String LEGACY_INDEX_BACKFILL_KEY = "LEGACY_INDEX_BACKFILL_KEY";
+	public static final String LEGACY_INDEX_BACKFILL_LOCK_KEY = "LEGACY_INDEX_BACKFILL_LOCK_KEY";
+	public static final String LEGACY_INDEX_PROGRESS_KEY = "LEGACY_INDEX_PROGRESS_KEY";
+
+	public static final String JOB_INSTANCE_SEQ_KEY = "JOB_INSTANCE_SEQ_KEY";
+	public static final String JOB_EXECUTION_SEQ_KEY = "JOB_EXECUTION_SEQ_KEY";
+	public static final String STEP_EXECUTION_SEQ_KEY = "STEP_EXECUTION_SEQ_KEY";
+
 	public static final int DEFAULT_MAX_VARCHAR_LENGTH = 2500;
 }
@@ -0,0 +1,18 @@
+-- Versioned update of a repository entity.
+--
+-- KEYS[1] entity hash, KEYS[2] version hash
+-- ARGV[1] entity id, ARGV[2] expected version, ARGV[3] new record,
+-- ARGV[4] new version
+--
+-- Returns the version stored before the call, or -1 if the entity has no
+-- version yet. The record is only written when that version is the expected
+-- one.
+local current = redis.call('HGET', KEYS[2], ARGV[1])
+if not current then
+	return -1
+end
+if current == ARGV[2] then
+	redis.call('HSET', KEYS[1], ARGV[1], ARGV[3])
+	redis.call('HSET', KEYS[2], ARGV[1], ARGV[4])
+end
+return tonumber(current)
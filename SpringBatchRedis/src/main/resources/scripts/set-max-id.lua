@@ -0,0 +1,13 @@
+-- Raises an id stored in a hash field.
+--
+-- KEYS[1] hash
+-- ARGV[1] field, ARGV[2] id
+--
+-- The id is only written when the field has no id yet or a smaller one.
+-- Returns the id stored after the call.
+local current = redis.call('HGET', KEYS[1], ARGV[1])
+if not current or tonumber(current) < tonumber(ARGV[2]) then
+	redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+	return ARGV[2]
+end
+return current
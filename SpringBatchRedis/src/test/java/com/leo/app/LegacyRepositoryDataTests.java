@@ -0,0 +1,457 @@
+package com.leo.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.DefaultJobKeyGenerator;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.dao.DefaultExecutionContextSerializer;
+import org.springframework.batch.core.repository.dao.JobExecutionDao;
+import org.springframework.batch.core.repository.dao.JobInstanceDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.leo.app.dao.RedisLegacyIndex;
+import com.leo.app.dao.RedisRepositoryCompactor;
+import com.leo.app.dao.RedisRepositoryCompactor.CompactionResult;
+import com.leo.app.dao.model.JobExecutionContext;
+import com.leo.app.dao.model.JobExecutionParams;
+import com.leo.app.dao.model.RedisJobExecution;
+import com.leo.app.dao.model.RedisJobInstance;
+import com.leo.app.dao.model.RedisStepExecution;
+import com.leo.app.util.AppConstants;
+
+/**
+ * Writes records the way the versions before the indexes did, only to the
+ * legacy sorted sets and as JSON, and checks that the repository still finds
+ * them. The repository itself writes binary records.
+ */
+@SpringBootTest(properties = { "repository.redis.port=" + LegacyRepositoryDataTests.PORT,
+		"repository.serializer=binary", "repository.legacy-index.backfill-on-startup=false" })
+@DirtiesContext
+class LegacyRepositoryDataTests {
+
+	static final int PORT = 6393;
+
+	private static final GenericJackson2JsonRedisSerializer LEGACY_SERIALIZER = new GenericJackson2JsonRedisSerializer();
+
+	@Autowired
+	StringRedisTemplate stringRedisTemplate;
+
+	@Autowired
+	JobInstanceDao jobInstanceDao;
+
+	@Autowired
+	JobExecutionDao jobExecutionDao;
+
+	@Autowired
+	JobRepository jobRepository;
+
+	@Autowired
+	JobExplorer jobExplorer;
+
+	@Autowired
+	JobLauncher jobLauncher;
+
+	@Autowired
+	Job bookWriterJob;
+
+	@Autowired
+	RedisRepositoryCompactor redisRepositoryCompactor;
+
+	@Autowired
+	RedisLegacyIndex redisLegacyIndex;
+
+	@Autowired
+	@Qualifier("jobInstanceIncrementer")
+	DataFieldMaxValueIncrementer jobInstanceIncrementer;
+
+	@Autowired
+	@Qualifier("jobExecutionIncrementer")
+	DataFieldMaxValueIncrementer jobExecutionIncrementer;
+
+	@Autowired
+	@Qualifier("stepExecutionIncrementer")
+	DataFieldMaxValueIncrementer stepExecutionIncrementer;
+
+	@BeforeEach
+	void clearBackfillMarker() {
+		stringRedisTemplate.delete(AppConstants.LEGACY_INDEX_BACKFILL_KEY);
+	}
+
+	@AfterEach
+	void setBackfillMarker() {
+		stringRedisTemplate.opsForValue().set(AppConstants.LEGACY_INDEX_BACKFILL_KEY, "0");
+	}
+
+	@Test
+	void findsLegacyJobInstancesByName() throws Exception {
+		String jobName = "legacyNameJob" + System.nanoTime();
+		RedisJobInstance older = writeLegacyJobInstance(jobName, "older");
+		RedisJobInstance newer = writeLegacyJobInstance(jobName, "newer");
+
+		List<JobInstance> jobInstances = jobInstanceDao.getJobInstances(jobName, 0, 10);
+		assertEquals(2, jobInstances.size());
+		assertEquals(newer.getJobInstanceId(), jobInstances.get(0).getId());
+		assertEquals(older.getJobInstanceId(), jobInstances.get(1).getId());
+
+		assertEquals(2, jobInstanceDao.getJobInstanceCount(jobName));
+		assertEquals(2, jobInstanceDao.findJobInstancesByName(jobName.substring(0, 12) + "*", 0, 10).stream()
+				.filter(jobInstance -> jobInstance.getJobName().equals(jobName)).count());
+		assertTrue(jobInstanceDao.getJobNames().contains(jobName));
+	}
+
+	@Test
+	void looksUpLegacyJobNameOnce() throws Exception {
+		String jobName = "legacyOnceJob" + System.nanoTime();
+		writeLegacyJobInstance(jobName, "first");
+		assertEquals(1, jobInstanceDao.getJobInstances(jobName, 0, 10).size());
+		assertTrue(stringRedisTemplate.opsForSet().isMember(AppConstants.LEGACY_INDEX_PROGRESS_KEY,
+				"job-name:" + jobName), "lookup recorded");
+
+		// Written by a node of a previous version after the lookup.
+		writeLegacyJobInstance(jobName, "second");
+		assertEquals(1, jobInstanceDao.getJobInstances(jobName, 0, 10).size(), "legacy set not scanned again");
+		assertEquals(1, jobInstanceDao.getJobInstanceCount(jobName));
+	}
+
+	@Test
+	void findsLastLegacyJobInstance() {
+		String jobName = "legacyLastJob" + System.nanoTime();
+		writeLegacyJobInstance(jobName, "older");
+		RedisJobInstance newer = writeLegacyJobInstance(jobName, "newer");
+
+		JobInstance lastJobInstance = jobInstanceDao.getLastJobInstance(jobName);
+		assertNotNull(lastJobInstance);
+		assertEquals(newer.getJobInstanceId(), lastJobInstance.getId());
+
+		assertNotNull(stringRedisTemplate.opsForZSet().score(AppConstants.JOB_NAME_INDEX_KEY, jobName),
+				"legacy name indexed on read");
+		assertEquals(2L,
+				stringRedisTemplate.opsForZSet().zCard(AppConstants.JOB_INSTANCE_BY_NAME_KEY_PREFIX + jobName),
+				"legacy instances indexed on read");
+	}
+
+	@Test
+	void findsLegacyJobInstanceByParameters() {
+		String jobName = "legacyKeyJob" + System.nanoTime();
+		JobParameters jobParameters = new JobParametersBuilder().addString("file", jobName).toJobParameters();
+		RedisJobInstance legacy = writeLegacyJobInstance(jobName,
+				new DefaultJobKeyGenerator().generateKey(jobParameters));
+
+		assertTrue(jobRepository.isJobInstanceExists(jobName, jobParameters), "no second instance is created");
+		JobInstance jobInstance = jobInstanceDao.getJobInstance(jobName, jobParameters);
+		assertNotNull(jobInstance);
+		assertEquals(legacy.getJobInstanceId(), jobInstance.getId());
+		assertNull(jobInstanceDao.getJobInstance(jobName, new JobParameters()));
+	}
+
+	@Test
+	void findsLegacyJobExecutions() {
+		String jobName = "legacyExecutionJob" + System.nanoTime();
+		RedisJobInstance legacy = writeLegacyJobInstance(jobName, "key");
+		JobInstance jobInstance = new JobInstance(legacy.getJobInstanceId(), jobName);
+		JobExecution older = writeLegacyJobExecution(jobInstance, BatchStatus.STARTED);
+		older.setStatus(BatchStatus.FAILED);
+		older.incrementVersion();
+		writeLegacyRecord(AppConstants.JOB_EXECUTION_SET_KEY, new RedisJobExecution(older), older.getId());
+		JobExecution newer = writeLegacyJobExecution(jobInstance, BatchStatus.COMPLETED);
+
+		JobExecution lastJobExecution = jobExecutionDao.getLastJobExecution(jobInstance);
+		assertNotNull(lastJobExecution);
+		assertEquals(newer.getId(), lastJobExecution.getId());
+
+		List<JobExecution> jobExecutions = jobExecutionDao.findJobExecutions(jobInstance);
+		assertEquals(2, jobExecutions.size());
+		assertEquals(newer.getId(), jobExecutions.get(0).getId());
+		assertEquals(older.getId(), jobExecutions.get(1).getId());
+		assertEquals(BatchStatus.FAILED, jobExecutions.get(1).getStatus(), "latest version of the legacy record");
+		assertEquals(2L, stringRedisTemplate.opsForZSet()
+				.zCard(AppConstants.JOB_EXECUTION_BY_INSTANCE_KEY_PREFIX + jobInstance.getId()),
+				"legacy executions indexed on read");
+	}
+
+	@Test
+	void looksUpJobKeyMissOfNewJobOnce() throws Exception {
+		String jobName = "newKeyJob" + System.nanoTime();
+		JobParameters jobParameters = new JobParametersBuilder().addString("file", jobName).toJobParameters();
+		assertNull(jobInstanceDao.getJobInstance(jobName, jobParameters));
+		assertTrue(stringRedisTemplate.opsForSet().isMember(AppConstants.LEGACY_INDEX_PROGRESS_KEY,
+				"job-name:" + jobName), "miss recorded");
+
+		JobInstance jobInstance = jobRepository.createJobExecution(jobName, jobParameters).getJobInstance();
+		assertEquals(jobInstance.getId(), jobInstanceDao.getJobInstance(jobName, jobParameters).getId());
+		assertEquals(jobInstance.getId(), jobInstanceDao.getLastJobInstance(jobName).getId());
+	}
+
+	@Test
+	void looksUpLegacyJobExecutionsOnce() {
+		String jobName = "legacyExecutionOnceJob" + System.nanoTime();
+		RedisJobInstance legacy = writeLegacyJobInstance(jobName, "key");
+		JobInstance jobInstance = new JobInstance(legacy.getJobInstanceId(), jobName);
+		JobExecution first = writeLegacyJobExecution(jobInstance, BatchStatus.FAILED);
+		assertEquals(first.getId(), jobExecutionDao.getLastJobExecution(jobInstance).getId());
+		assertTrue(stringRedisTemplate.opsForSet().isMember(AppConstants.LEGACY_INDEX_PROGRESS_KEY,
+				"job-instance:" + jobInstance.getId()), "lookup recorded");
+
+		// Written by a node of a previous version after the lookup.
+		writeLegacyJobExecution(jobInstance, BatchStatus.FAILED);
+		assertEquals(1, jobExecutionDao.findJobExecutions(jobInstance).size(), "legacy set not scanned again");
+	}
+
+	@Test
+	void findsJobInstanceOfLegacyJobExecution() {
+		String jobName = "legacyExecutionInstanceJob" + System.nanoTime();
+		RedisJobInstance legacy = writeLegacyJobInstance(jobName, "key");
+		JobExecution jobExecution = writeLegacyJobExecution(new JobInstance(legacy.getJobInstanceId(), jobName),
+				BatchStatus.COMPLETED);
+
+		JobInstance jobInstance = jobInstanceDao.getJobInstance(new JobExecution(jobExecution.getId()));
+		assertNotNull(jobInstance);
+		assertEquals(legacy.getJobInstanceId(), jobInstance.getId());
+		assertEquals(jobName, jobInstance.getJobName());
+		assertEquals(String.valueOf(legacy.getJobInstanceId()), stringRedisTemplate.opsForHash()
+				.get(AppConstants.JOB_EXECUTION_INSTANCE_HASH_KEY, String.valueOf(jobExecution.getId())),
+				"legacy execution indexed on read");
+	}
+
+	@Test
+	void findsLegacyStepExecutions() {
+		String jobName = "legacyStepJob" + System.nanoTime();
+		RedisJobInstance legacy = writeLegacyJobInstance(jobName, "key");
+		JobExecution jobExecution = writeLegacyJobExecution(new JobInstance(legacy.getJobInstanceId(), jobName),
+				BatchStatus.COMPLETED);
+		StepExecution first = writeLegacyStepExecution(jobExecution, "first", BatchStatus.COMPLETED);
+		StepExecution second = writeLegacyStepExecution(jobExecution, "second", BatchStatus.COMPLETED);
+
+		JobExecution found = jobExplorer.getJobExecution(jobExecution.getId());
+		assertNotNull(found);
+		List<StepExecution> stepExecutions = new ArrayList<>(found.getStepExecutions());
+		assertEquals(2, stepExecutions.size());
+		assertEquals(first.getId(), stepExecutions.get(0).getId());
+		assertEquals(second.getId(), stepExecutions.get(1).getId());
+		assertEquals(2L, stringRedisTemplate.opsForZSet()
+				.zCard(AppConstants.STEP_EXECUTION_BY_JOB_EXECUTION_KEY_PREFIX + jobExecution.getId()),
+				"legacy step executions indexed on read");
+	}
+
+	@Test
+	void looksUpLegacyStepExecutionsOnce() {
+		String jobName = "legacyStepOnceJob" + System.nanoTime();
+		RedisJobInstance legacy = writeLegacyJobInstance(jobName, "key");
+		JobExecution jobExecution = writeLegacyJobExecution(new JobInstance(legacy.getJobInstanceId(), jobName),
+				BatchStatus.COMPLETED);
+		assertTrue(jobExplorer.getJobExecution(jobExecution.getId()).getStepExecutions().isEmpty());
+		assertTrue(stringRedisTemplate.opsForSet().isMember(AppConstants.LEGACY_INDEX_PROGRESS_KEY,
+				"job-execution:" + jobExecution.getId()), "lookup recorded");
+
+		// Written by a node of a previous version after the lookup.
+		writeLegacyStepExecution(jobExecution, "step", BatchStatus.COMPLETED);
+		assertTrue(jobExplorer.getJobExecution(jobExecution.getId()).getStepExecutions().isEmpty(),
+				"legacy set not scanned again");
+	}
+
+	@Test
+	void readsLegacyExecutionContext() throws Exception {
+		String jobName = "legacyContextJob" + System.nanoTime();
+		RedisJobInstance legacy = writeLegacyJobInstance(jobName, "key");
+		JobExecution jobExecution = writeLegacyJobExecution(new JobInstance(legacy.getJobInstanceId(), jobName),
+				BatchStatus.COMPLETED);
+		ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+		new DefaultExecutionContextSerializer().serialize(Collections.singletonMap("reader.line", 42), serialized);
+		JobExecutionContext context = new JobExecutionContext();
+		context.setJobExecutionId(jobExecution.getId());
+		context.setShortContext(new String(serialized.toByteArray(), StandardCharsets.ISO_8859_1));
+		writeLegacyRecord(AppConstants.JOB_EXECUTION_CONTEXT, context, jobExecution.getId());
+
+		assertEquals(42, jobExplorer.getJobExecution(jobExecution.getId()).getExecutionContext().getInt("reader.line"));
+	}
+
+	@Test
+	void restartsLegacyJobInstance() throws Exception {
+		JobParameters jobParameters = new JobParametersBuilder().addLong("run", System.nanoTime()).toJobParameters();
+		RedisJobInstance legacy = writeLegacyJobInstance(bookWriterJob.getName(),
+				new DefaultJobKeyGenerator().generateKey(jobParameters));
+		JobExecution failed = writeLegacyJobExecution(new JobInstance(legacy.getJobInstanceId(), legacy.getJobName()),
+				BatchStatus.FAILED);
+		StepExecution completed = writeLegacyStepExecution(failed, "bookReaderStep", BatchStatus.COMPLETED);
+
+		StepExecution lastStepExecution = jobRepository.getLastStepExecution(failed.getJobInstance(),
+				"bookReaderStep");
+		assertNotNull(lastStepExecution);
+		assertEquals(completed.getId(), lastStepExecution.getId());
+
+		assertTrue(stringRedisTemplate.opsForSet().isMember(AppConstants.LEGACY_INDEX_PROGRESS_KEY,
+				"job-instance-steps:" + legacy.getJobInstanceId()), "lookup recorded");
+		assertNull(jobRepository.getLastStepExecution(failed.getJobInstance(), "bookWriterStep"));
+
+		JobExecution restarted = jobLauncher.run(bookWriterJob, jobParameters);
+		assertEquals(BatchStatus.COMPLETED, restarted.getStatus());
+		assertEquals(legacy.getJobInstanceId(), restarted.getJobInstance().getId(), "legacy instance restarted");
+		assertTrue(restarted.getStepExecutions().isEmpty(), "completed legacy step not run again");
+	}
+
+	@Test
+	void backfillsLegacyRecordsOnCompaction() {
+		String jobName = "legacyBackfillJob" + System.nanoTime();
+		JobParameters jobParameters = new JobParametersBuilder().addString("file", jobName).toJobParameters();
+		RedisJobInstance legacy = writeLegacyJobInstance(jobName,
+				new DefaultJobKeyGenerator().generateKey(jobParameters));
+		JobInstance legacyJobInstance = new JobInstance(legacy.getJobInstanceId(), jobName);
+		JobExecution jobExecution = writeLegacyJobExecution(legacyJobInstance, BatchStatus.FAILED);
+		StepExecution stepExecution = writeLegacyStepExecution(jobExecution, "step", BatchStatus.COMPLETED);
+		writeLegacyRecord(AppConstants.JOB_EXECUTION_PARAMS_SET_KEY,
+				new JobExecutionParams(jobExecution.getId(), "file", "STRING", jobName, "Y"), jobExecution.getId());
+
+		CompactionResult result = redisRepositoryCompactor.compact();
+		assertTrue(result.getIndexedMembers() >= 4);
+		assertTrue(stringRedisTemplate.hasKey(AppConstants.LEGACY_INDEX_BACKFILL_KEY), "backfill marked");
+
+		// From here on the legacy sets are no longer looked up.
+		JobInstance jobInstance = jobInstanceDao.getJobInstance(jobName, jobParameters);
+		assertNotNull(jobInstance);
+		assertEquals(legacy.getJobInstanceId(), jobInstance.getId());
+		assertEquals(1, jobInstanceDao.getJobInstances(jobName, 0, 10).size());
+		JobExecution lastJobExecution = jobExecutionDao.getLastJobExecution(legacyJobInstance);
+		assertNotNull(lastJobExecution);
+		assertEquals(jobExecution.getId(), lastJobExecution.getId());
+		assertEquals(1, jobExplorer.getJobExecution(jobExecution.getId()).getStepExecutions().size());
+		assertEquals(jobParameters, jobExplorer.getJobExecution(jobExecution.getId()).getJobParameters(),
+				"legacy parameters copied");
+		StepExecution lastStepExecution = jobRepository.getLastStepExecution(legacyJobInstance, "step");
+		assertNotNull(lastStepExecution);
+		assertEquals(stepExecution.getId(), lastStepExecution.getId());
+	}
+
+	@Test
+	void backfillsRunningLegacyJobExecutions() {
+		String jobName = "legacyRunningJob" + System.nanoTime();
+		RedisJobInstance legacy = writeLegacyJobInstance(jobName, "key");
+		JobInstance jobInstance = new JobInstance(legacy.getJobInstanceId(), jobName);
+		JobExecution running = writeLegacyJobExecution(jobInstance, BatchStatus.STARTED);
+		running.setStartTime(new Date());
+		running.incrementVersion();
+		writeLegacyRecord(AppConstants.JOB_EXECUTION_SET_KEY, new RedisJobExecution(running), running.getId());
+		JobExecution ended = writeLegacyJobExecution(jobInstance, BatchStatus.STARTED);
+		ended.setStartTime(new Date());
+		ended.incrementVersion();
+		writeLegacyRecord(AppConstants.JOB_EXECUTION_SET_KEY, new RedisJobExecution(ended), ended.getId());
+		ended.setStatus(BatchStatus.COMPLETED);
+		ended.setEndTime(new Date());
+		ended.incrementVersion();
+		writeLegacyRecord(AppConstants.JOB_EXECUTION_SET_KEY, new RedisJobExecution(ended), ended.getId());
+
+		redisLegacyIndex.backfill(500);
+
+		Set<JobExecution> runningJobExecutions = jobExplorer.findRunningJobExecutions(jobName);
+		assertEquals(1, runningJobExecutions.size(), "latest version of each legacy record");
+		assertEquals(running.getId(), runningJobExecutions.iterator().next().getId());
+	}
+
+	@Test
+	void storesJobExecutionWithoutParameters() throws Exception {
+		JobExecution jobExecution = jobRepository.createJobExecution("noParametersJob" + System.nanoTime(),
+				new JobParameters());
+
+		assertEquals(Collections.singleton("\0"), stringRedisTemplate.opsForHash()
+				.keys(AppConstants.JOB_EXECUTION_PARAMS_KEY_PREFIX + jobExecution.getId()), "marker field only");
+		assertTrue(jobExplorer.getJobExecution(jobExecution.getId()).getJobParameters().isEmpty());
+	}
+
+	@Test
+	void backfillsLegacyRecordsInBackground() throws Exception {
+		String jobName = "legacyStartupJob" + System.nanoTime();
+		RedisJobInstance legacy = writeLegacyJobInstance(jobName, "key");
+		jobInstanceDao.getJobInstances("legacyStartupOtherJob", 0, 10);
+
+		redisLegacyIndex.startBackfill();
+		long deadline = System.currentTimeMillis() + 10000;
+		while (redisLegacyIndex.isPending() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertFalse(redisLegacyIndex.isPending(), "backfill marked");
+		assertFalse(stringRedisTemplate.hasKey(AppConstants.LEGACY_INDEX_PROGRESS_KEY), "lookups forgotten");
+		assertFalse(stringRedisTemplate.hasKey(AppConstants.LEGACY_INDEX_BACKFILL_LOCK_KEY), "lock released");
+		assertEquals(String.valueOf(legacy.getJobInstanceId()), stringRedisTemplate.opsForZSet()
+				.reverseRange(AppConstants.JOB_INSTANCE_BY_NAME_KEY_PREFIX + jobName, 0, 0).iterator().next());
+	}
+
+	@Test
+	void skipsBackfillWhileLocked() {
+		stringRedisTemplate.opsForValue().set(AppConstants.LEGACY_INDEX_BACKFILL_LOCK_KEY, "other-node");
+		try {
+			assertEquals(0, redisLegacyIndex.backfill(500));
+			assertTrue(redisLegacyIndex.isPending(), "not marked");
+		} finally {
+			stringRedisTemplate.delete(AppConstants.LEGACY_INDEX_BACKFILL_LOCK_KEY);
+		}
+	}
+
+	private StepExecution writeLegacyStepExecution(JobExecution jobExecution, String stepName, BatchStatus status) {
+		StepExecution stepExecution = new StepExecution(stepName, jobExecution,
+				stepExecutionIncrementer.nextLongValue());
+		stepExecution.setStatus(status);
+		stepExecution.setStartTime(new Date());
+		stepExecution.setLastUpdated(new Date());
+		stepExecution.incrementVersion();
+		writeLegacyRecord(AppConstants.STEP_EXECUTION_SET_KEY, new RedisStepExecution(stepExecution),
+				stepExecution.getId());
+		return stepExecution;
+	}
+
+	private JobExecution writeLegacyJobExecution(JobInstance jobInstance, BatchStatus status) {
+		JobExecution jobExecution = new JobExecution(jobInstance, jobExecutionIncrementer.nextLongValue(),
+				new JobParameters(), null);
+		jobExecution.setStatus(status);
+		jobExecution.setCreateTime(new Date());
+		jobExecution.incrementVersion();
+		writeLegacyRecord(AppConstants.JOB_EXECUTION_SET_KEY, new RedisJobExecution(jobExecution),
+				jobExecution.getId());
+		return jobExecution;
+	}
+
+	private RedisJobInstance writeLegacyJobInstance(String jobName, String jobKey) {
+		RedisJobInstance redisJobInstance = new RedisJobInstance(jobInstanceIncrementer.nextLongValue(), jobName);
+		redisJobInstance.setJobKey(jobKey);
+		redisJobInstance.incrementVersion();
+		writeLegacyRecord(AppConstants.JOB_INSTANCE_SET_KEY, redisJobInstance, redisJobInstance.getJobInstanceId());
+		writeLegacyRecord(AppConstants.JOB_INSTANCE_STRING_KEY, jobName, redisJobInstance.getJobInstanceId());
+		return redisJobInstance;
+	}
+
+	private void writeLegacyRecord(String legacySetKey, Object record, long id) {
+		stringRedisTemplate.execute((RedisCallback<Boolean>) connection -> connection.zAdd(
+				stringRedisTemplate.getStringSerializer().serialize(legacySetKey), id,
+				LEGACY_SERIALIZER.serialize(record)));
+	}
+
+}
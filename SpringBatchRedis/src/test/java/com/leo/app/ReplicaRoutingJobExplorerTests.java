@@ -0,0 +1,222 @@
+package com.leo.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.leo.app.dao.model.RedisJobExecution;
+import com.leo.app.dao.model.RedisJobInstance;
+import com.leo.app.dao.model.RedisStepExecution;
+import com.leo.app.util.AppConstants;
+
+import redis.clients.jedis.Jedis;
+import redis.embedded.RedisServer;
+import redis.embedded.RedisServerBuilder;
+
+/**
+ * Runs the job repository on its own primary with a replica of it, and checks
+ * that the explorer reads from the replica except what this node wrote
+ * recently, legacy records included.
+ */
+@SpringBootTest(properties = { "repository.redis.port=" + ReplicaRoutingJobExplorerTests.PRIMARY_PORT,
+		"repository.replica.port=" + ReplicaRoutingJobExplorerTests.REPLICA_PORT,
+		"repository.replica.read-your-writes-ms=" + ReplicaRoutingJobExplorerTests.READ_YOUR_WRITES_MS,
+		"repository.legacy-index.backfill-on-startup=false" })
+@DirtiesContext
+class ReplicaRoutingJobExplorerTests {
+
+	static final int PRIMARY_PORT = 6390;
+
+	static final int REPLICA_PORT = 6391;
+
+	static final long READ_YOUR_WRITES_MS = 1000;
+
+	private static final GenericJackson2JsonRedisSerializer LEGACY_SERIALIZER = new GenericJackson2JsonRedisSerializer();
+
+	private static RedisServer replica;
+
+	@Autowired
+	JobLauncher jobLauncher;
+
+	@Autowired
+	Job bookWriterJob;
+
+	@Autowired
+	JobExplorer jobExplorer;
+
+	@Autowired
+	JobRepository jobRepository;
+
+	@Autowired
+	StringRedisTemplate stringRedisTemplate;
+
+	@Autowired
+	@Qualifier("jobInstanceIncrementer")
+	DataFieldMaxValueIncrementer jobInstanceIncrementer;
+
+	@Autowired
+	@Qualifier("jobExecutionIncrementer")
+	DataFieldMaxValueIncrementer jobExecutionIncrementer;
+
+	@Autowired
+	@Qualifier("stepExecutionIncrementer")
+	DataFieldMaxValueIncrementer stepExecutionIncrementer;
+
+	@BeforeAll
+	static void startReplica() {
+		replica = new RedisServerBuilder().port(REPLICA_PORT).slaveOf("localhost", PRIMARY_PORT).build();
+		replica.start();
+	}
+
+	@AfterAll
+	static void stopReplica() {
+		replica.stop();
+	}
+
+	@Test
+	void readsRecentWritesFromPrimaryAndOthersFromReplica() throws Exception {
+		JobExecution replicated = launch();
+		assertNotNull(jobExplorer.getJobExecution(replicated.getId()), "own write read from the primary");
+
+		try (Jedis primaryClient = new Jedis("localhost", PRIMARY_PORT);
+				Jedis replicaClient = new Jedis("localhost", REPLICA_PORT)) {
+			awaitReplication(primaryClient, replicaClient);
+			// From here on the replica lags behind the primary for good.
+			replicaClient.slaveofNoOne();
+		}
+
+		replicated.setStatus(BatchStatus.ABANDONED);
+		jobRepository.update(replicated);
+		assertEquals(BatchStatus.ABANDONED, jobExplorer.getJobExecution(replicated.getId()).getStatus(),
+				"update read from the primary within the read-your-writes window");
+
+		Thread.sleep(READ_YOUR_WRITES_MS + 200);
+		assertEquals(BatchStatus.COMPLETED, jobExplorer.getJobExecution(replicated.getId()).getStatus(),
+				"older execution read from the replica");
+
+		JobExecution notReplicated = launch();
+		assertNotNull(jobExplorer.getJobExecution(notReplicated.getId()), "own write read from the primary");
+
+		Thread.sleep(READ_YOUR_WRITES_MS + 200);
+		assertNull(jobExplorer.getJobExecution(notReplicated.getId()), "replica does not have the execution");
+	}
+
+	@Test
+	void readsLegacyRecordsFromReplicaWithoutIndexing() throws Exception {
+		String jobName = "legacyReplicaJob" + System.nanoTime();
+		RedisJobInstance legacy = new RedisJobInstance(jobInstanceIncrementer.nextLongValue(), jobName);
+		legacy.setJobKey("key");
+		legacy.incrementVersion();
+		writeLegacyRecord(AppConstants.JOB_INSTANCE_SET_KEY, legacy, legacy.getJobInstanceId());
+		JobInstance legacyJobInstance = new JobInstance(legacy.getJobInstanceId(), jobName);
+		JobExecution legacyJobExecution = new JobExecution(legacyJobInstance, jobExecutionIncrementer.nextLongValue(),
+				new JobParameters(), null);
+		legacyJobExecution.setStatus(BatchStatus.COMPLETED);
+		legacyJobExecution.setCreateTime(new Date());
+		legacyJobExecution.incrementVersion();
+		writeLegacyRecord(AppConstants.JOB_EXECUTION_SET_KEY, new RedisJobExecution(legacyJobExecution),
+				legacyJobExecution.getId());
+		StepExecution legacyStepExecution = new StepExecution("step", legacyJobExecution,
+				stepExecutionIncrementer.nextLongValue());
+		legacyStepExecution.setStatus(BatchStatus.COMPLETED);
+		legacyStepExecution.setStartTime(new Date());
+		legacyStepExecution.incrementVersion();
+		writeLegacyRecord(AppConstants.STEP_EXECUTION_SET_KEY, new RedisStepExecution(legacyStepExecution),
+				legacyStepExecution.getId());
+		stringRedisTemplate.delete(AppConstants.LEGACY_INDEX_BACKFILL_KEY);
+
+		try (Jedis primaryClient = new Jedis("localhost", PRIMARY_PORT);
+				Jedis replicaClient = new Jedis("localhost", REPLICA_PORT)) {
+			replicaClient.slaveof("localhost", PRIMARY_PORT);
+			awaitReplication(primaryClient, replicaClient);
+
+			try {
+				List<JobInstance> jobInstances = jobExplorer.getJobInstances(jobName, 0, 10);
+				assertEquals(1, jobInstances.size());
+				assertEquals(legacy.getJobInstanceId(), jobInstances.get(0).getId());
+				assertEquals(1, jobExplorer.getJobInstanceCount(jobName));
+				assertEquals(legacy.getJobInstanceId(), jobExplorer.getLastJobInstance(jobName).getId());
+				assertEquals(1, jobExplorer.findJobInstancesByJobName(jobName.substring(0, 10) + "*", 0, 10).size());
+
+				List<JobExecution> jobExecutions = jobExplorer.getJobExecutions(legacyJobInstance);
+				assertEquals(1, jobExecutions.size());
+				assertEquals(legacyJobExecution.getId(), jobExecutions.get(0).getId());
+				assertEquals(legacyJobExecution.getId(), jobExplorer.getLastJobExecution(legacyJobInstance).getId());
+
+				JobExecution jobExecution = jobExplorer.getJobExecution(legacyJobExecution.getId());
+				assertEquals(legacy.getJobInstanceId(), jobExecution.getJobInstance().getId());
+				assertEquals(1, jobExecution.getStepExecutions().size());
+
+				assertFalse(primaryClient.exists(AppConstants.JOB_INSTANCE_BY_NAME_KEY_PREFIX + jobName),
+						"no index entries written on replica reads");
+				assertFalse(primaryClient.exists(AppConstants.LEGACY_INDEX_PROGRESS_KEY),
+						"no lookups recorded on replica reads");
+			} finally {
+				stringRedisTemplate.opsForValue().set(AppConstants.LEGACY_INDEX_BACKFILL_KEY, "0");
+			}
+		}
+	}
+
+	private void writeLegacyRecord(String legacySetKey, Object record, long id) {
+		stringRedisTemplate.execute((RedisCallback<Boolean>) connection -> connection.zAdd(
+				stringRedisTemplate.getStringSerializer().serialize(legacySetKey), id,
+				LEGACY_SERIALIZER.serialize(record)));
+	}
+
+	private JobExecution launch() throws Exception {
+		JobExecution jobExecution = jobLauncher.run(bookWriterJob,
+				new JobParametersBuilder().addLong("run", System.nanoTime()).toJobParameters());
+		assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+		return jobExecution;
+	}
+
+	private static void awaitReplication(Jedis primaryClient, Jedis replicaClient) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (System.currentTimeMillis() < deadline) {
+			String primaryOffset = replicationInfo(primaryClient, "master_repl_offset");
+			if ("up".equals(replicationInfo(replicaClient, "master_link_status"))
+					&& primaryOffset.equals(replicationInfo(replicaClient, "slave_repl_offset"))) {
+				return;
+			}
+			Thread.sleep(100);
+		}
+		assertTrue(false, "replica did not catch up with the primary");
+	}
+
+	private static String replicationInfo(Jedis client, String field) {
+		for (String line : client.info("replication").split("\r\n")) {
+			if (line.startsWith(field + ":")) {
+				return line.substring(field.length() + 1);
+			}
+		}
+		return "";
+	}
+
+}
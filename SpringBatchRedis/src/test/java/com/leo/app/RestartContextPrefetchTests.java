@@ -0,0 +1,86 @@
+package com.leo.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.leo.app.dao.RedisJobExecutionDao;
+import com.leo.app.listener.RestartContextPrefetchListener;
+
+/**
+ * Checks that every job gets the restart context prefetch, and that it only
+ * reads the latest executions of the job instance.
+ */
+@SpringBootTest(properties = "repository.redis.port=" + RestartContextPrefetchTests.PORT)
+@DirtiesContext
+class RestartContextPrefetchTests {
+
+	static final int PORT = 6394;
+
+	@SpyBean
+	RestartContextPrefetchListener restartContextPrefetchListener;
+
+	@Autowired
+	JobLauncher jobLauncher;
+
+	@Autowired
+	Job repositoryCompactionJob;
+
+	@Autowired
+	JobRepository jobRepository;
+
+	@Autowired
+	RedisJobExecutionDao redisJobExecutionDao;
+
+	@Test
+	void prefetchesForJobsWithoutExplicitListener() throws Exception {
+		JobExecution jobExecution = jobLauncher.run(repositoryCompactionJob,
+				new JobParametersBuilder().addLong("run", System.nanoTime()).toJobParameters());
+		assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+
+		verify(restartContextPrefetchListener)
+				.beforeJob(argThat(execution -> execution.getId().equals(jobExecution.getId())));
+		verify(restartContextPrefetchListener)
+				.afterJob(argThat(execution -> execution.getId().equals(jobExecution.getId())));
+	}
+
+	@Test
+	void findsLatestExecutionsOnly() throws Exception {
+		JobParameters jobParameters = new JobParametersBuilder().addLong("run", System.nanoTime()).toJobParameters();
+		JobExecution first = failedExecution(jobParameters);
+		JobExecution second = failedExecution(jobParameters);
+		JobExecution third = failedExecution(jobParameters);
+
+		List<JobExecution> latest = redisJobExecutionDao.findJobExecutions(third.getJobInstance(), 2);
+		assertEquals(2, latest.size());
+		assertEquals(third.getId(), latest.get(0).getId());
+		assertEquals(second.getId(), latest.get(1).getId());
+
+		List<JobExecution> all = redisJobExecutionDao.findJobExecutions(third.getJobInstance());
+		assertEquals(3, all.size());
+		assertEquals(first.getId(), all.get(2).getId());
+	}
+
+	private JobExecution failedExecution(JobParameters jobParameters) throws Exception {
+		JobExecution jobExecution = jobRepository.createJobExecution("restartedJob", jobParameters);
+		jobExecution.setStatus(BatchStatus.FAILED);
+		jobRepository.update(jobExecution);
+		return jobExecution;
+	}
+
+}
@@ -0,0 +1,226 @@
+package com.leo.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import com.leo.app.dao.RedisEntityStore;
+import com.leo.app.util.AppConstants;
+
+/**
+ * Runs chunk steps with the step execution updates written behind, and checks
+ * that the updates held back are only written by the step itself, so a chunk
+ * rolled back by a failed commit restores the version that is stored, and
+ * that a failed update does not leave updates held back.
+ */
+@SpringBootTest(properties = { "repository.redis.port=" + StepExecutionWriteBehindTests.PORT,
+		"repository.step-execution.write-behind.enabled=true",
+		"repository.step-execution.write-behind.interval-ms=" + StepExecutionWriteBehindTests.INTERVAL_MS,
+		"repository.step-execution.write-behind.max-updates=10", "cron.book.reader.exp=-" })
+@DirtiesContext
+class StepExecutionWriteBehindTests {
+
+	static final int PORT = 6392;
+
+	static final long INTERVAL_MS = 1000;
+
+	static final int ITEMS = 30;
+
+	@SpyBean
+	RedisEntityStore redisEntityStore;
+
+	@Autowired
+	JobLauncher jobLauncher;
+
+	@Autowired
+	Job commitFailureJob;
+
+	@Autowired
+	Job slowChunkJob;
+
+	@Autowired
+	JobExplorer jobExplorer;
+
+	@Autowired
+	JobRepository jobRepository;
+
+	@Test
+	void rollbackOfFailedCommitKeepsStoredVersion() throws Exception {
+		JobExecution jobExecution = launch(commitFailureJob);
+		assertEquals(BatchStatus.FAILED, jobExecution.getStatus());
+		for (Throwable failure : jobExecution.getAllFailureExceptions()) {
+			assertTrue(!(failure instanceof OptimisticLockingFailureException), failure.toString());
+		}
+
+		StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+		assertEquals(BatchStatus.FAILED, stepExecution.getStatus());
+		assertEquals(1, stepExecution.getRollbackCount());
+		assertEquals(2, stepExecution.getCommitCount(), "the failed commit is reverted");
+		assertEquals(6, stepExecution.getWriteCount(), "the failed commit is reverted");
+		assertStored(jobExecution, stepExecution);
+	}
+
+	@Test
+	void writesHeldBackUpdatesOnStepThread() throws Exception {
+		Set<String> writingThreads = ConcurrentHashMap.newKeySet();
+		doAnswer(invocation -> {
+			if (AppConstants.STEP_EXECUTION_HASH_KEY.equals(invocation.getArgument(0))) {
+				writingThreads.add(Thread.currentThread().getName());
+			}
+			return invocation.callRealMethod();
+		}).when(redisEntityStore).compareAndSet(anyString(), anyString(), anyString(), anyLong(), anyInt(), any(),
+				any());
+
+		JobExecution jobExecution = launch(slowChunkJob);
+		assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+		assertEquals(Collections.singleton(Thread.currentThread().getName()), writingThreads);
+
+		StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+		assertEquals(ITEMS, stepExecution.getWriteCount());
+		assertStored(jobExecution, stepExecution);
+	}
+
+	@Test
+	void writesUpdateAfterFailedUpdateAtOnce() throws Exception {
+		JobExecution jobExecution = jobRepository.createJobExecution("failedUpdateJob",
+				new JobParametersBuilder().addLong("run", System.nanoTime()).toJobParameters());
+		StepExecution stepExecution = jobExecution.createStepExecution("failedUpdateStep");
+		jobRepository.add(stepExecution);
+		stepExecution.setStatus(BatchStatus.STARTED);
+		jobRepository.update(stepExecution);
+
+		AtomicBoolean failing = new AtomicBoolean(true);
+		doAnswer(invocation -> {
+			if (failing.get() && AppConstants.STEP_EXECUTION_HASH_KEY.equals(invocation.getArgument(0))) {
+				throw new DataAccessResourceFailureException("Connection lost");
+			}
+			return invocation.callRealMethod();
+		}).when(redisEntityStore).compareAndSet(anyString(), anyString(), anyString(), anyLong(), anyInt(), any(),
+				any());
+		stepExecution.setStatus(BatchStatus.STOPPING);
+		assertThrows(DataAccessResourceFailureException.class, () -> jobRepository.update(stepExecution));
+
+		failing.set(false);
+		stepExecution.setStatus(BatchStatus.STARTED);
+		stepExecution.setReadCount(5);
+		jobRepository.update(stepExecution);
+		assertStored(jobExecution, stepExecution);
+	}
+
+	private JobExecution launch(Job job) throws Exception {
+		return jobLauncher.run(job, new JobParametersBuilder().addLong("run", System.nanoTime()).toJobParameters());
+	}
+
+	private void assertStored(JobExecution jobExecution, StepExecution stepExecution) {
+		StepExecution stored = jobExplorer.getStepExecution(jobExecution.getId(), stepExecution.getId());
+		assertEquals(stepExecution.getStatus(), stored.getStatus());
+		assertEquals(stepExecution.getVersion(), stored.getVersion());
+		assertEquals(stepExecution.getReadCount(), stored.getReadCount());
+		assertEquals(stepExecution.getWriteCount(), stored.getWriteCount());
+		assertEquals(stepExecution.getCommitCount(), stored.getCommitCount());
+		assertEquals(stepExecution.getRollbackCount(), stored.getRollbackCount());
+	}
+
+	@TestConfiguration
+	static class WriteBehindJobConfig {
+
+		@Autowired
+		JobBuilderFactory jobBuilderFactory;
+
+		@Autowired
+		StepBuilderFactory stepBuilderFactory;
+
+		/**
+		 * The third chunk fails to commit after its step execution update has been
+		 * held back.
+		 */
+		@Bean
+		Job commitFailureJob() {
+			AtomicInteger commits = new AtomicInteger();
+			ResourcelessTransactionManager transactionManager = new ResourcelessTransactionManager() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void doCommit(DefaultTransactionStatus status) {
+					if (commits.incrementAndGet() == 3) {
+						throw new IllegalStateException("Could not commit");
+					}
+					super.doCommit(status);
+				}
+			};
+			ItemWriter<Integer> writer = chunk -> {
+			};
+
+			return jobBuilderFactory.get("commitFailureJob")
+					.start(stepBuilderFactory.get("commitFailureStep").transactionManager(transactionManager)
+							.<Integer, Integer>chunk(3).reader(new ListItemReader<>(items())).writer(writer).build())
+					.build();
+		}
+
+		/**
+		 * One chunk takes longer than the interval while the updates of the chunks
+		 * before are held back.
+		 */
+		@Bean
+		Job slowChunkJob() {
+			AtomicBoolean slow = new AtomicBoolean();
+			ItemWriter<Integer> writer = chunk -> {
+				if (chunk.contains(ITEMS / 2) && slow.compareAndSet(false, true)) {
+					Thread.sleep(INTERVAL_MS * 3 / 2);
+				}
+			};
+
+			return jobBuilderFactory.get("slowChunkJob")
+					.start(stepBuilderFactory.get("slowChunkStep").<Integer, Integer>chunk(3)
+							.reader(new ListItemReader<>(items())).writer(writer).build())
+					.build();
+		}
+
+		private static List<Integer> items() {
+			List<Integer> items = new ArrayList<>();
+			for (int i = 1; i <= ITEMS; i++) {
+				items.add(i);
+			}
+			return items;
+		}
+
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.leo.app.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * Pool metrics of the connection factories, in the application meter registry
+ * and on a pool of one connection, and the near cache metrics of the DAOs.
+ */
+@SpringBootTest
+class MeteredJedisConnectionFactoryTests {
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Value("${repository.redis.port}")
+	int redisPort;
+
+	@Test
+	void publishesPrimaryPoolToApplicationRegistry() {
+		for (String name : new String[] { "repository.redis.pool.active", "repository.redis.pool.idle",
+				"repository.redis.pool.waiters", "repository.redis.pool.borrow-wait.mean",
+				"repository.redis.pool.borrow-wait.max" }) {
+			assertNotNull(meterRegistry.find(name).tag("pool", "primary").gauge(), name);
+		}
+	}
+
+	@Test
+	void publishesNearCachesToApplicationRegistry() {
+		for (String cache : new String[] { "job-instance", "job-instance-key", "job-execution-instance",
+				"job-parameters" }) {
+			assertNotNull(meterRegistry.find("repository.cache.size").tag("cache", cache).gauge(), cache);
+			assertNotNull(meterRegistry.find("repository.cache.gets").tag("cache", cache).tag("result", "hit")
+					.counter(), cache);
+		}
+	}
+
+	@Test
+	void reportsActiveIdleAndWaiters() throws Exception {
+		JedisPoolConfig poolConfig = new JedisPoolConfig();
+		poolConfig.setMaxTotal(1);
+		MeterRegistry registry = new SimpleMeterRegistry();
+		MeteredJedisConnectionFactory connectionFactory = new MeteredJedisConnectionFactory("single", registry,
+				new RedisStandaloneConfiguration("localhost", redisPort),
+				JedisClientConfiguration.builder().usePooling().poolConfig(poolConfig).build());
+		connectionFactory.afterPropertiesSet();
+		try {
+			CompletableFuture<String> waiting;
+			RedisConnection connection = connectionFactory.getConnection();
+			try {
+				assertEquals(1, gauge(registry, "repository.redis.pool.active"));
+				assertEquals(0, gauge(registry, "repository.redis.pool.idle"));
+
+				waiting = CompletableFuture.supplyAsync(() -> {
+					RedisConnection blocked = connectionFactory.getConnection();
+					try {
+						return blocked.ping();
+					} finally {
+						blocked.close();
+					}
+				});
+				long deadline = System.currentTimeMillis() + 5000;
+				while (gauge(registry, "repository.redis.pool.waiters") == 0
+						&& System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+				assertEquals(1, gauge(registry, "repository.redis.pool.waiters"));
+			} finally {
+				connection.close();
+			}
+
+			assertEquals("PONG", waiting.get(5, TimeUnit.SECONDS));
+			assertEquals(0, gauge(registry, "repository.redis.pool.active"));
+			assertEquals(1, gauge(registry, "repository.redis.pool.idle"));
+			assertEquals(0, gauge(registry, "repository.redis.pool.waiters"));
+			assertTrue(registry.find("repository.redis.pool.borrow-wait.max").tag("pool", "single").timeGauge()
+					.value(TimeUnit.MILLISECONDS) > 0);
+		} finally {
+			connectionFactory.destroy();
+		}
+	}
+
+	private static double gauge(MeterRegistry registry, String name) {
+		return registry.find(name).tag("pool", "single").gauge().value();
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.leo.app.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.dao.JobExecutionDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import com.leo.app.dao.model.RedisJobExecution;
+
+/**
+ * Versioned updates of the entity store on keys of their own, and of the
+ * executions saved by the job repository.
+ */
+@SpringBootTest
+class RedisEntityStoreTests {
+
+	private final String hashKey = "TEST_ENTITY_HASH_" + System.nanoTime();
+
+	private final String legacySetKey = "TEST_ENTITY_SET_" + System.nanoTime();
+
+	private final String versionHashKey = "TEST_ENTITY_VERSION_HASH_" + System.nanoTime();
+
+	@Autowired
+	RedisEntityStore redisEntityStore;
+
+	@Autowired
+	RedisTemplate<String, Object> redisTemplate;
+
+	@Autowired
+	StringRedisTemplate stringRedisTemplate;
+
+	@Autowired
+	JobRepository jobRepository;
+
+	@Autowired
+	JobExecutionDao jobExecutionDao;
+
+	@AfterEach
+	void deleteKeys() {
+		stringRedisTemplate.delete(Arrays.asList(hashKey, legacySetKey, versionHashKey));
+	}
+
+	@Test
+	void writesExpectedVersion() {
+		redisTemplate.opsForHash().put(hashKey, "1", execution(1L, 1, "STARTED"));
+		stringRedisTemplate.opsForHash().put(versionHashKey, "1", "1");
+
+		assertEquals(1, compareAndSet(1L, 1, execution(1L, 2, "COMPLETED")));
+		assertEquals("COMPLETED", stored(1L).getStatus());
+		assertEquals("2", stringRedisTemplate.opsForHash().get(versionHashKey, "1"));
+	}
+
+	@Test
+	void rejectsStaleVersion() {
+		redisTemplate.opsForHash().put(hashKey, "1", execution(1L, 2, "STARTED"));
+		stringRedisTemplate.opsForHash().put(versionHashKey, "1", "2");
+
+		assertEquals(2, compareAndSet(1L, 1, execution(1L, 2, "COMPLETED")));
+		assertEquals("STARTED", stored(1L).getStatus(), "stale update not written");
+		assertEquals("2", stringRedisTemplate.opsForHash().get(versionHashKey, "1"));
+	}
+
+	@Test
+	void seedsVersionOfHashRecordWithoutVersionEntry() {
+		redisTemplate.opsForHash().put(hashKey, "1", execution(1L, 3, "STARTED"));
+
+		assertEquals(3, compareAndSet(1L, 3, execution(1L, 4, "COMPLETED")));
+		assertEquals("COMPLETED", stored(1L).getStatus());
+		assertEquals("4", stringRedisTemplate.opsForHash().get(versionHashKey, "1"));
+	}
+
+	@Test
+	void seedsVersionOfLegacyRecord() {
+		writeLegacyRecord(execution(1L, 1, "STARTING"), 1L);
+		writeLegacyRecord(execution(1L, 2, "STARTED"), 1L);
+
+		assertEquals(2, compareAndSet(1L, 1, execution(1L, 2, "COMPLETED")), "seeded from the latest version");
+		assertEquals(2, compareAndSet(1L, 2, execution(1L, 3, "COMPLETED")));
+		assertEquals("COMPLETED", stored(1L).getStatus());
+		assertEquals("3", stringRedisTemplate.opsForHash().get(versionHashKey, "1"));
+	}
+
+	@Test
+	void reportsMissingEntity() {
+		assertEquals(null, compareAndSet(1L, 1, execution(1L, 2, "COMPLETED")));
+		assertEquals(null, stringRedisTemplate.opsForHash().get(versionHashKey, "1"));
+	}
+
+	@Test
+	void staleJobExecutionUpdateFails() throws Exception {
+		JobExecution jobExecution = jobRepository.createJobExecution("casJob",
+				new JobParametersBuilder().addLong("run", System.nanoTime()).toJobParameters());
+		JobExecution stale = copy(jobExecution);
+
+		jobExecution.setStatus(BatchStatus.STARTED);
+		jobExecutionDao.updateJobExecution(jobExecution);
+
+		// Through the job repository the version would first be synchronized.
+		stale.setStatus(BatchStatus.FAILED);
+		assertThrows(OptimisticLockingFailureException.class, () -> jobExecutionDao.updateJobExecution(stale));
+		assertEquals(BatchStatus.STARTED, jobExecutionDao.getJobExecution(jobExecution.getId()).getStatus());
+	}
+
+	@Test
+	void staleStepExecutionUpdateFails() throws Exception {
+		JobExecution jobExecution = jobRepository.createJobExecution("casJob",
+				new JobParametersBuilder().addLong("run", System.nanoTime()).toJobParameters());
+		StepExecution stepExecution = jobExecution.createStepExecution("casStep");
+		jobRepository.add(stepExecution);
+		StepExecution stale = new StepExecution("casStep", jobExecution, stepExecution.getId());
+		stale.setVersion(stepExecution.getVersion());
+
+		stepExecution.setStatus(BatchStatus.STARTED);
+		jobRepository.update(stepExecution);
+
+		stale.setStatus(BatchStatus.FAILED);
+		assertThrows(OptimisticLockingFailureException.class, () -> jobRepository.update(stale));
+	}
+
+	private Integer compareAndSet(Long id, int expectedVersion, RedisJobExecution entity) {
+		return redisEntityStore.compareAndSet(hashKey, legacySetKey, versionHashKey, id, expectedVersion, entity,
+				RedisJobExecution::getVersion);
+	}
+
+	private RedisJobExecution stored(Long id) {
+		return redisEntityStore.get(hashKey, legacySetKey, id, RedisJobExecution::getVersion);
+	}
+
+	private void writeLegacyRecord(Object record, long id) {
+		byte[] rawKey = stringRedisTemplate.getStringSerializer().serialize(legacySetKey);
+		byte[] member = new GenericJackson2JsonRedisSerializer().serialize(record);
+		stringRedisTemplate.execute((RedisCallback<Boolean>) connection -> connection.zAdd(rawKey, id, member));
+	}
+
+	private static RedisJobExecution execution(Long id, int version, String status) {
+		RedisJobExecution redisJobExecution = new RedisJobExecution();
+		redisJobExecution.setJobExecutionId(id);
+		redisJobExecution.setVersion(version);
+		redisJobExecution.setStatus(status);
+		return redisJobExecution;
+	}
+
+	private static JobExecution copy(JobExecution jobExecution) {
+		JobExecution copy = new JobExecution(jobExecution.getJobInstance(), jobExecution.getId(),
+				jobExecution.getJobParameters(), jobExecution.getJobConfigurationName());
+		copy.setCreateTime(jobExecution.getCreateTime());
+		copy.setVersion(jobExecution.getVersion());
+		return copy;
+	}
+
+}
@@ -0,0 +1,179 @@
+package com.leo.app.dao;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Resource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import com.leo.app.util.AppConstants;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Stored form of the execution contexts and their round trip through the job
+ * repository.
+ */
+@SpringBootTest
+class RedisExecutionContextDaoTests {
+
+	@Autowired
+	JobRepository jobRepository;
+
+	@Autowired
+	RedisExecutionContextDao redisExecutionContextDao;
+
+	@Resource(name = "byteArrayRedisTemplate")
+	RedisTemplate<String, byte[]> byteArrayRedisTemplate;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	private StepExecution stepExecution;
+
+	@BeforeEach
+	void createStepExecution() throws Exception {
+		JobExecution jobExecution = jobRepository.createJobExecution("contextJob",
+				new JobParametersBuilder().addLong("run", System.nanoTime()).toJobParameters());
+		stepExecution = jobExecution.createStepExecution("contextStep");
+		jobRepository.add(stepExecution);
+	}
+
+	@Test
+	void deflatesLargeEntries() throws Exception {
+		List<String> readerState = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			readerState.add("book-" + i);
+		}
+		stepExecution.getExecutionContext().put("reader.state", readerState);
+		stepExecution.getExecutionContext().putLong("reader.read.count", 2000L);
+		jobRepository.updateExecutionContext(stepExecution);
+
+		byte[] large = storedEntry("reader.state");
+		assertEquals(2, large[0], "deflated");
+		int serializedLength = serialize(readerState).length;
+		assertTrue(large.length < serializedLength / 2,
+				"stored in " + large.length + " of " + serializedLength + " bytes");
+		assertEquals(1, storedEntry("reader.read.count")[0], "small entry stored raw");
+
+		ExecutionContext stored = redisExecutionContextDao.getExecutionContext(stepExecution);
+		assertEquals(readerState, stored.get("reader.state"));
+		assertEquals(2000L, stored.getLong("reader.read.count"));
+	}
+
+	@Test
+	void storesOnlyValueOfEntry() throws Exception {
+		stepExecution.getExecutionContext().putInt("reader.line", 42);
+		jobRepository.updateExecutionContext(stepExecution);
+
+		byte[] serialized = serialize(42);
+		byte[] expected = new byte[serialized.length + 1];
+		expected[0] = 1;
+		System.arraycopy(serialized, 0, expected, 1, serialized.length);
+		assertArrayEquals(expected, storedEntry("reader.line"));
+	}
+
+	@Test
+	void readsSingleEntry() {
+		stepExecution.getExecutionContext().putString("reader.file", "books.csv");
+		stepExecution.getExecutionContext().putInt("reader.line", 42);
+		jobRepository.updateExecutionContext(stepExecution);
+
+		assertEquals("books.csv", redisExecutionContextDao.getExecutionContextValue(stepExecution, "reader.file"));
+		assertEquals(42, redisExecutionContextDao.getExecutionContextValue(stepExecution, "reader.line"));
+		assertEquals(null, redisExecutionContextDao.getExecutionContextValue(stepExecution, "reader.missing"));
+	}
+
+	@Test
+	void writesChangedPutFollowedByUnchangedPut() {
+		stepExecution.getExecutionContext().putInt("reader.line", 1);
+		jobRepository.updateExecutionContext(stepExecution);
+
+		stepExecution.getExecutionContext().putInt("reader.line", 2);
+		// Clears the dirty flag set by the put before
+		stepExecution.getExecutionContext().putString("reader.file", "books.csv");
+		stepExecution.getExecutionContext().putString("reader.file", "books.csv");
+		jobRepository.updateExecutionContext(stepExecution);
+
+		assertEquals(2, redisExecutionContextDao.getExecutionContextValue(stepExecution, "reader.line"));
+		assertEquals("books.csv", redisExecutionContextDao.getExecutionContextValue(stepExecution, "reader.file"));
+	}
+
+	@Test
+	void skipsUnchangedUpdate() {
+		Counter skipped = meterRegistry.find("repository.context.writes.skipped").tag("kind", "step").counter();
+		stepExecution.getExecutionContext().putString("reader.file", "books.csv");
+		stepExecution.getExecutionContext().putInt("reader.line", 42);
+		jobRepository.updateExecutionContext(stepExecution);
+		double skippedBefore = skipped.count();
+
+		stepExecution.getExecutionContext().putInt("reader.line", 42);
+		jobRepository.updateExecutionContext(stepExecution);
+		assertEquals(skippedBefore + 1, skipped.count());
+
+		stepExecution.getExecutionContext().putInt("reader.line", 43);
+		jobRepository.updateExecutionContext(stepExecution);
+		assertEquals(skippedBefore + 1, skipped.count());
+		assertEquals(43, redisExecutionContextDao.getExecutionContextValue(stepExecution, "reader.line"));
+	}
+
+	@Test
+	void writesValuesChangedInPlace() {
+		List<String> readerState = new ArrayList<>();
+		readerState.add("book-1");
+		stepExecution.getExecutionContext().put("reader.state", readerState);
+		jobRepository.updateExecutionContext(stepExecution);
+
+		readerState.add("book-2");
+		jobRepository.updateExecutionContext(stepExecution);
+
+		assertEquals(readerState, redisExecutionContextDao.getExecutionContextValue(stepExecution, "reader.state"));
+	}
+
+	@Test
+	void deletesRemovedEntries() {
+		stepExecution.getExecutionContext().putString("reader.file", "books.csv");
+		stepExecution.getExecutionContext().putInt("reader.line", 42);
+		jobRepository.updateExecutionContext(stepExecution);
+
+		stepExecution.getExecutionContext().remove("reader.line");
+		jobRepository.updateExecutionContext(stepExecution);
+
+		assertEquals(null, storedEntry("reader.line"));
+		ExecutionContext stored = redisExecutionContextDao.getExecutionContext(stepExecution);
+		assertEquals(1, stored.size());
+		assertEquals("books.csv", stored.getString("reader.file"));
+	}
+
+	private static byte[] serialize(Object value) throws IOException {
+		ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+			out.writeObject(value);
+		}
+		return serialized.toByteArray();
+	}
+
+	private byte[] storedEntry(String key) {
+		return byteArrayRedisTemplate.<String, byte[]>opsForHash()
+				.get(AppConstants.STEP_EXECUTION_CONTEXT_KEY_PREFIX + stepExecution.getId(), key);
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.leo.app.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Resource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+
+import com.leo.app.util.AppConstants;
+
+/**
+ * Leases ids from sequences of their own, and from the job execution sequence
+ * next to another node.
+ */
+@SpringBootTest
+class RedisIdIncrementerTests {
+
+	@Autowired
+	StringRedisTemplate stringRedisTemplate;
+
+	@Resource(name = "jobExecutionIncrementer")
+	DataFieldMaxValueIncrementer jobExecutionIncrementer;
+
+	private final List<String> sequenceKeys = new ArrayList<>();
+
+	@AfterEach
+	void deleteSequences() {
+		stringRedisTemplate.delete(sequenceKeys);
+		sequenceKeys.clear();
+	}
+
+	@Test
+	void idsAreUniqueAcrossIncrementers() {
+		String sequenceKey = newSequenceKey();
+		RedisIdIncrementer first = new RedisIdIncrementer(stringRedisTemplate, sequenceKey, 3);
+		RedisIdIncrementer second = new RedisIdIncrementer(stringRedisTemplate, sequenceKey, 3);
+
+		Set<Long> ids = new HashSet<>();
+		for (int i = 0; i < 20; i++) {
+			assertTrue(ids.add(first.nextLongValue()));
+			assertTrue(ids.add(second.nextLongValue()));
+		}
+		assertEquals(40, ids.size());
+	}
+
+	@Test
+	void leasesNextBlockOnceBlockIsUsedUp() {
+		String sequenceKey = newSequenceKey();
+		RedisIdIncrementer first = new RedisIdIncrementer(stringRedisTemplate, sequenceKey, 5);
+		RedisIdIncrementer second = new RedisIdIncrementer(stringRedisTemplate, sequenceKey, 5);
+
+		long start = first.nextLongValue();
+		for (int i = 1; i < 5; i++) {
+			assertEquals(start + i, first.nextLongValue(), "ids of the block are handed out locally");
+		}
+		assertEquals(String.valueOf(start + 4), stringRedisTemplate.opsForValue().get(sequenceKey),
+				"one block leased");
+
+		assertEquals(start + 5, second.nextLongValue(), "second incrementer leases the next block");
+		assertEquals(start + 10, first.nextLongValue(), "first incrementer leases the block after");
+		assertEquals(String.valueOf(start + 14), stringRedisTemplate.opsForValue().get(sequenceKey));
+	}
+
+	@Test
+	void jobExecutionIdsFollowCreationOrderAcrossNodes() {
+		RedisIdIncrementer otherNode = new RedisIdIncrementer(stringRedisTemplate, AppConstants.JOB_EXECUTION_SEQ_KEY,
+				1);
+
+		long previous = jobExecutionIncrementer.nextLongValue();
+		for (int i = 0; i < 10; i++) {
+			long next = i % 2 == 0 ? otherNode.nextLongValue() : jobExecutionIncrementer.nextLongValue();
+			assertTrue(next > previous, "created later, higher id");
+			previous = next;
+		}
+	}
+
+	@Test
+	void seedStaysAboveTimeBasedIds() {
+		long legacyId = System.currentTimeMillis();
+		RedisIdIncrementer incrementer = new RedisIdIncrementer(stringRedisTemplate, newSequenceKey(), 10);
+		assertTrue(incrementer.nextLongValue() > legacyId);
+	}
+
+	@Test
+	void seedDoesNotLowerExistingCounter() {
+		String sequenceKey = newSequenceKey();
+		long existing = System.currentTimeMillis() + 1000000;
+		stringRedisTemplate.opsForValue().set(sequenceKey, String.valueOf(existing));
+
+		RedisIdIncrementer incrementer = new RedisIdIncrementer(stringRedisTemplate, sequenceKey, 10);
+		assertEquals(existing + 1, incrementer.nextLongValue());
+	}
+
+	private String newSequenceKey() {
+		String sequenceKey = "TEST_SEQ_KEY_" + System.nanoTime();
+		sequenceKeys.add(sequenceKey);
+		return sequenceKey;
+	}
+
+}
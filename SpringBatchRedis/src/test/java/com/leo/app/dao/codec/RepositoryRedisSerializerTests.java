@@ -0,0 +1,184 @@
+package com.leo.app.dao.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leo.app.dao.model.JobExecutionContext;
+import com.leo.app.dao.model.JobExecutionParams;
+import com.leo.app.dao.model.RedisJobExecution;
+import com.leo.app.dao.model.RedisJobInstance;
+import com.leo.app.dao.model.RedisStepExecution;
+import com.leo.app.dao.model.StepExecutionContext;
+
+/**
+ * Round trips every record type through both formats, and reads the JSON
+ * records of the types no longer stored. The model classes base equality on
+ * the id alone, so records are compared by their JSON form.
+ */
+class RepositoryRedisSerializerTests {
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	private final GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+
+	private final RepositoryRedisSerializer binary = new RepositoryRedisSerializer(jsonSerializer,
+			RepositoryRedisSerializer.BINARY);
+
+	private final RepositoryRedisSerializer json = new RepositoryRedisSerializer(jsonSerializer,
+			RepositoryRedisSerializer.JSON);
+
+	@Test
+	void roundTripsEveryRecordType() throws Exception {
+		for (Object record : records()) {
+			byte[] bytes = binary.serialize(record);
+			assertEquals(RecordReader.MAGIC, bytes[0], "binary record of " + record.getClass().getSimpleName());
+			assertTrue(bytes.length < jsonSerializer.serialize(record).length);
+			assertSameFields(record, binary.deserialize(bytes));
+		}
+	}
+
+	@Test
+	void roundTripsNullFields() throws Exception {
+		List<Object> records = Arrays.asList(new RedisJobInstance(), new RedisJobExecution(), new RedisStepExecution());
+		for (Object record : records) {
+			assertSameFields(record, binary.deserialize(binary.serialize(record)));
+		}
+
+		RedisStepExecution someNull = stepExecution();
+		someNull.setStartTime(null);
+		someNull.setStatus(null);
+		someNull.setReadCount(null);
+		someNull.setLastUpdated(null);
+		assertSameFields(someNull, binary.deserialize(binary.serialize(someNull)));
+	}
+
+	@Test
+	void roundTripsStringsOutsideInternedTable() throws Exception {
+		RedisJobExecution jobExecution = jobExecution();
+		jobExecution.setExitCode("CUSTOM_EXIT_CODE");
+		RedisStepExecution stepExecution = stepExecution();
+		stepExecution.setStatus("completed");
+		stepExecution.setExitCode("");
+
+		for (Object record : Arrays.asList(jobExecution, stepExecution)) {
+			assertSameFields(record, binary.deserialize(binary.serialize(record)));
+		}
+	}
+
+	@Test
+	void roundTripsNegativeNumbers() throws Exception {
+		for (long value : new long[] { -1, -64, -65, Long.MIN_VALUE, Long.MAX_VALUE }) {
+			RedisJobExecution jobExecution = jobExecution();
+			jobExecution.setJobInstanceId(value);
+			jobExecution.setStartTime(new Date(-86400000L));
+			assertSameFields(jobExecution, binary.deserialize(binary.serialize(jobExecution)));
+		}
+
+		RedisStepExecution stepExecution = stepExecution();
+		stepExecution.setVersion(-1);
+		stepExecution.setFilterCount(Integer.MIN_VALUE);
+		assertSameFields(stepExecution, binary.deserialize(binary.serialize(stepExecution)));
+	}
+
+	@Test
+	void readsJsonRecordsInBinaryFormat() throws Exception {
+		for (Object record : records()) {
+			byte[] bytes = json.serialize(record);
+			assertNotEquals(RecordReader.MAGIC, bytes[0]);
+			assertSameFields(record, binary.deserialize(bytes));
+			// Records written by earlier versions
+			assertSameFields(record, binary.deserialize(jsonSerializer.serialize(record)));
+		}
+	}
+
+	@Test
+	void readsLegacyParameterAndContextRecords() throws Exception {
+		JobExecutionContext jobContext = new JobExecutionContext();
+		jobContext.setJobExecutionId(7L);
+		jobContext.setShortContext("{\"count\":1}");
+		StepExecutionContext stepContext = new StepExecutionContext();
+		stepContext.setStepExecutionId(9L);
+		stepContext.setShortContext("{}");
+
+		for (Object record : Arrays.asList(new JobExecutionParams(7L, "run", "LONG", 1584000000000L, "Y"), jobContext,
+				stepContext)) {
+			assertSameFields(record, binary.deserialize(jsonSerializer.serialize(record)));
+		}
+	}
+
+	@Test
+	void readsBinaryRecordsInJsonFormat() throws Exception {
+		for (Object record : records()) {
+			assertSameFields(record, json.deserialize(binary.serialize(record)));
+		}
+	}
+
+	@Test
+	void writesOtherValuesAsJson() {
+		assertEquals("\"bookWriterJob\"", new String(binary.serialize("bookWriterJob")));
+		assertEquals("bookWriterJob", binary.deserialize(binary.serialize("bookWriterJob")));
+	}
+
+	private static void assertSameFields(Object expected, Object actual) throws JsonProcessingException {
+		assertEquals(expected.getClass(), actual.getClass());
+		assertEquals(OBJECT_MAPPER.writeValueAsString(expected), OBJECT_MAPPER.writeValueAsString(actual));
+	}
+
+	private static List<Object> records() {
+		RedisJobInstance jobInstance = new RedisJobInstance(1584000000000L, "bookWriterJob");
+		jobInstance.setJobKey("0c3a8f2e5b1d4e6f7a8b9c0d1e2f3a4b");
+		jobInstance.setVersion(1);
+
+		return Arrays.asList(jobInstance, jobExecution(), stepExecution());
+	}
+
+	private static RedisJobExecution jobExecution() {
+		RedisJobExecution jobExecution = new RedisJobExecution();
+		jobExecution.setJobExecutionId(7L);
+		jobExecution.setJobInstanceId(1584000000000L);
+		jobExecution.setStartTime(new Date(1584000001000L));
+		jobExecution.setEndTime(new Date(1584000002000L));
+		jobExecution.setStatus("COMPLETED");
+		jobExecution.setExitCode("COMPLETED");
+		jobExecution.setExitMessage("All books written ✓");
+		jobExecution.setVersion(3);
+		jobExecution.setCreateTime(new Date(1584000000500L));
+		jobExecution.setLastUpdated(new Date(1584000002000L));
+		jobExecution.setJobConfigurationLocation("bookWriterJob.xml");
+		return jobExecution;
+	}
+
+	private static RedisStepExecution stepExecution() {
+		RedisStepExecution stepExecution = new RedisStepExecution();
+		stepExecution.setStepExecutionId(9L);
+		stepExecution.setVersion(5);
+		stepExecution.setStepName("bookReaderStep");
+		stepExecution.setJobExecutionId(7L);
+		stepExecution.setStartTime(new Date(1584000001000L));
+		stepExecution.setEndTime(new Date(1584000002000L));
+		stepExecution.setStatus("COMPLETED");
+		stepExecution.setCommitCount(4);
+		stepExecution.setReadCount(300);
+		stepExecution.setFilterCount(2);
+		stepExecution.setWriteCount(298);
+		stepExecution.setExitCode("COMPLETED");
+		stepExecution.setExistMessage("");
+		stepExecution.setReadSkipCount(0);
+		stepExecution.setWriteSkipCount(1);
+		stepExecution.setProcessSkipCount(0);
+		stepExecution.setRollbackCount(1);
+		stepExecution.setLastUpdated(new Date(1584000002000L));
+		return stepExecution;
+	}
+
+}